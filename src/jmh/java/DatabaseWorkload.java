@@ -0,0 +1,46 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+public class DatabaseWorkload implements bench.Workloads.Database {
+
+    private static final int maxDays = 3650;
+
+    private DatabaseManager db;
+    private int petId;
+
+    @Override
+    public void setup(int rows) throws Exception {
+        db = new DatabaseManager();
+        petId = db.createPet("Bench " + rows);
+        LocalDate today = LocalDate.now();
+        // Three meals a day, packed denser once the history would run past ten years.
+        int days = Math.max(1, Math.min(rows / 3, maxDays));
+        int perDay = (rows + days - 1) / days;
+        DatabaseManager.ImportResult r = db.bulkImport(petId, IntStream.range(0, rows)
+                .mapToObj(i -> new HistoryRecord.Meal(today.minusDays(days - 1 - i / perDay), "Meal " + (i % 3), 0.5)), 10_000);
+        System.out.println("Seeded " + r);
+    }
+
+    @Override
+    public void loadProfile() {
+        db.loadProfile(new PetProfile(petId, "Bench", Clock.systemDefaultZone()));
+    }
+
+    @Override
+    public void insertMeal() {
+        db.addMeal(petId, LocalDate.now(), "Bench", 0.5);
+        db.flush();
+    }
+
+    @Override
+    public void insertMealBatch(int rows) throws Exception {
+        LocalDate today = LocalDate.now();
+        db.bulkImport(petId, IntStream.range(0, rows).mapToObj(i -> new HistoryRecord.Meal(today, "Bench", 0.5)), rows);
+    }
+
+    @Override
+    public void tearDown() {
+        db.close();
+    }
+}
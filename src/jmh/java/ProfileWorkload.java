@@ -0,0 +1,33 @@
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public class ProfileWorkload implements bench.Workloads.Profile {
+
+    private PetProfile pet;
+
+    @Override
+    public void setup(int rows) {
+        pet = new PetProfile("Bench");
+        LocalDate today = LocalDate.now();
+        int days = Math.max(1, rows / 3);
+        for (int i = 0; i < rows; i++) {
+            LocalDate d = today.minusDays(days - 1 - i / 3);
+            pet.addMeal(d, "Meal " + (i % 3), 0.5);
+            if (i % 3 == 0) pet.addDailyActivity(d, 30 + i % 60);
+        }
+        pet.getTeeth().setLast(today.minusDays(3));
+    }
+
+    @Override
+    public double dailyFoodIntake() { return pet.getDailyFoodIntake(); }
+
+    @Override
+    public List<String> mealLogs() { return pet.getMealLogs(); }
+
+    @Override
+    public Map<?, ?> dailyActivities() { return pet.getDailyActivities(); }
+
+    @Override
+    public long dueIn() { return pet.getTeeth().dueIn(); }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Runs against the Postgres configured through DB_URL / DB_USER / DB_PASS; each
+// trial seeds a fresh pet so history size is the only thing that changes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseBench {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private Workloads.Database db;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        db = Workloads.load("DatabaseWorkload");
+        db.setup(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.tearDown();
+    }
+
+    @Benchmark
+    public void loadProfile() {
+        db.loadProfile();
+    }
+
+    @Benchmark
+    public void insertMeal() {
+        db.insertMeal();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void insertMealBatch() throws Exception {
+        db.insertMealBatch(1000);
+    }
+}
@@ -0,0 +1,47 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ProfileBench {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private Workloads.Profile profile;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        profile = Workloads.load("ProfileWorkload");
+        profile.setup(rows);
+    }
+
+    @Benchmark
+    public double dailyFoodIntake() {
+        return profile.dailyFoodIntake();
+    }
+
+    @Benchmark
+    public List<String> mealLogs() {
+        return profile.mealLogs();
+    }
+
+    @Benchmark
+    public Map<?, ?> dailyActivities() {
+        return profile.dailyActivities();
+    }
+
+    @Benchmark
+    public long routineDueIn() {
+        return profile.dueIn();
+    }
+}
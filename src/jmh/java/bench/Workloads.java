@@ -0,0 +1,37 @@
+package bench;
+
+import java.util.List;
+import java.util.Map;
+
+// JMH refuses benchmarks in the default package and named packages cannot import
+// the application classes, so each workload is implemented on the application side
+// and looked up by name.
+public final class Workloads {
+
+    public interface Profile {
+        void setup(int rows);
+        double dailyFoodIntake();
+        List<String> mealLogs();
+        Map<?, ?> dailyActivities();
+        long dueIn();
+    }
+
+    public interface Database {
+        void setup(int rows) throws Exception;
+        void loadProfile();
+        void insertMeal();
+        void insertMealBatch(int rows) throws Exception;
+        void tearDown();
+    }
+
+    private Workloads() {}
+
+    @SuppressWarnings("unchecked")
+    public static <T> T load(String className) {
+        try {
+            return (T) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Workload not found: " + className, e);
+        }
+    }
+}
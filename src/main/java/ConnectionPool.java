@@ -0,0 +1,160 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool implements AutoCloseable {
+
+    public interface Factory {
+        Connection open() throws SQLException;
+    }
+
+    private final Factory factory;
+    private final int size;
+    private final long idleTimeoutMs;
+    private final long validateAfterMs;
+    private final long borrowTimeoutMs;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private volatile boolean closed;
+
+    public ConnectionPool(Factory factory, int size) {
+        this(factory, size, 300_000, 30_000, 10_000);
+    }
+
+    public ConnectionPool(Factory factory, int size, long idleTimeoutMs, long validateAfterMs, long borrowTimeoutMs) {
+        if (size <= 0) throw new IllegalArgumentException("Pool size must be positive");
+        this.factory = factory;
+        this.size = size;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validateAfterMs = validateAfterMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits = new Semaphore(size, true);
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        if (closed) throw new SQLException("Pool closed");
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection", e);
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            PooledConnection pc;
+            while ((pc = pollIdle(now)) != null) {
+                if (now - pc.lastUsed < validateAfterMs || pc.isValid()) return pc;
+                pc.destroy();
+            }
+            return new PooledConnection(factory.open());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized PooledConnection pollIdle(long now) {
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pc = it.next();
+            if (now - pc.lastUsed > idleTimeoutMs) {
+                it.remove();
+                pc.destroy();
+            }
+        }
+        return idle.pollFirst();
+    }
+
+    private void release(PooledConnection pc) {
+        pc.lastUsed = System.currentTimeMillis();
+        boolean keep = !closed && pc.reset();
+        if (keep) {
+            synchronized (this) { idle.addFirst(pc); }
+        } else {
+            pc.destroy();
+        }
+        permits.release();
+    }
+
+    public synchronized int idleCount() { return idle.size(); }
+
+    public int available() { return permits.availablePermits(); }
+
+    public int size() { return size; }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            for (PooledConnection pc : idle) pc.destroy();
+            idle.clear();
+        }
+    }
+
+    public class PooledConnection implements AutoCloseable {
+        private final Connection conn;
+        private final Map<String, PreparedStatement> stmts = new HashMap<>();
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        public Connection conn() { return conn; }
+
+        // Cached per connection; callers must not close the returned statement.
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = stmts.get(sql);
+            if (ps == null || ps.isClosed()) {
+                ps = conn.prepareStatement(sql);
+                stmts.put(sql, ps);
+            }
+            return ps;
+        }
+
+        private boolean isValid() {
+            try {
+                return conn.isValid(2);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private boolean reset() {
+            try {
+                if (conn.isClosed()) return false;
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void destroy() {
+            for (PreparedStatement ps : stmts.values()) {
+                try { ps.close(); } catch (SQLException ignored) {}
+            }
+            stmts.clear();
+            try { conn.close(); } catch (SQLException ignored) {}
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -1,17 +1,62 @@
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.geometry.Pos;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class DashboardController {
 
-    private PetProfile pet = new PetProfile("Jojo", Clock.systemDefaultZone());
-    private DatabaseManager db;
+    private static final int historyDays = Integer.parseInt(System.getenv().getOrDefault("HISTORY_DAYS", "90"));
+    private static final Metrics.Timer initTimer = Metrics.timer("ui_initialize");
+    private static final Metrics.Timer switchTimer = Metrics.timer("ui_switch_pet");
+    private static final Metrics.Timer olderTimer = Metrics.timer("ui_load_older");
+    private static final Metrics.Timer statsTimer = Metrics.timer("ui_save_stats");
+    private static final Metrics.Timer foodTimer = Metrics.timer("ui_save_food");
+    private static final Metrics.Timer weightTimer = Metrics.timer("ui_save_weight");
+    private static final Metrics.Timer routineTimer = Metrics.timer("ui_routine");
+    private static final Metrics.Timer settingsTimer = Metrics.timer("ui_save_settings");
+
+    private PetProfile pet;
+    private Storage db;
+    private PetRegistry pets;
+    private volatile Map<Integer, String> petNames = Map.of();
+    private final List<Integer> petIds = new ArrayList<>();
+    private PetProfile listening;
+    private final RoutineScheduler scheduler = new RoutineScheduler();
+    private Timeline snapshots;
+    // Pet loads run here, off the FX thread; results are published with runLater.
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "dashboard-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private int wanted; // pet last selected; an older load finishing late is not shown
+
+    @FXML private TabPane root;
+    private final HistoryCache historyCache = HistoryCache.fromEnv();
+
+    @FXML private ComboBox<String> petBox;
+    @FXML private TextField newPetName;
 
     @FXML private Label hrLabel;
     @FXML private Label rrLabel;
+    @FXML private Label vitalsLabel;
     @FXML private ProgressBar actBar;
     @FXML private Label actLabel;
     @FXML private Label scratchLabel;
@@ -25,17 +70,19 @@ public class DashboardController {
     @FXML private TextField foodName;
     @FXML private TextField foodAmt;
     @FXML private Label foodTotal;
-    @FXML private ListView<String> foodList;
+    @FXML private Label foodWeek;
+    @FXML private ListView<HistoryRecord.Meal> foodList;
 
     @FXML private TextField wtInput;
-    @FXML private ListView<String> wtList;
+    @FXML private ListView<HistoryRecord.Weight> wtList;
+    @FXML private Label wtTrend;
 
     @FXML private Label teethLabel;
     @FXML private Label earsLabel;
     @FXML private Label groomLabel;
     @FXML private Label nexLabel;
     @FXML private Label showerLabel;
-    @FXML private ListView<String> groomList;
+    @FXML private ListView<HistoryRecord.Grooming> groomList;
 
     @FXML private TextField tgtActInput;
     @FXML private TextField optWtInput;
@@ -46,14 +93,206 @@ public class DashboardController {
     @FXML private TextField nexIntInput;
     @FXML private TextField showerIntInput;
 
-    @FXML private ListView<String> actHistList;
+    @FXML private ListView<HistoryRecord.Activity> actHistList;
+
+    @FXML private VBox customRoutines;
+    @FXML private TextField newRoutineName;
+    @FXML private TextField newRoutineFreq;
+
+    private final HistoryList<HistoryRecord.Meal> mealModel = new HistoryList<>(false, false);
+    private final HistoryList<HistoryRecord.Weight> weightModel = new HistoryList<>(false, false);
+    private final HistoryList<HistoryRecord.Grooming> groomModel = new HistoryList<>(false, false);
+    private final HistoryList<HistoryRecord.Activity> actModel = new HistoryList<>(true, true);
+
+    private final PetProfile.HistoryListener history = new PetProfile.HistoryListener() {
+        @Override
+        public void added(HistoryRecord r) {
+            if (r instanceof HistoryRecord.Meal m) mealModel.add(m);
+            else if (r instanceof HistoryRecord.Weight w) {
+                weightModel.add(w);
+                updateWeightTrend();
+            }
+            else if (r instanceof HistoryRecord.Grooming g) groomModel.add(g);
+            else if (r instanceof HistoryRecord.Activity a) actModel.add(a);
+        }
+
+        @Override
+        public void loaded(HistoryBatch b) {
+            mealModel.addAll(b.meals);
+            weightModel.addAll(b.weights);
+            if (!b.weights.isEmpty()) updateWeightTrend();
+            groomModel.addAll(b.grooming);
+            actModel.addAll(b.activity);
+        }
+
+        @Override
+        public void evicted(LocalDate before) {
+            mealModel.removeBefore(before);
+            weightModel.removeBefore(before);
+            groomModel.removeBefore(before);
+            actModel.removeBefore(before);
+        }
+    };
 
     @FXML
     public void initialize() {
-        db = new DatabaseManager();
-        db.loadProfile(pet);
+        long start = System.nanoTime();
+        db = Storage.open();
+        mealModel.bind(foodList, m -> m.date() + " | " + m.name() + ": " + m.amount());
+        weightModel.bind(wtList, w -> w.date() + ": " + w.weight() + " kg");
+        groomModel.bind(groomList, g -> g.date() + ": " + g.description());
+        if (actHistList != null) actModel.bind(actHistList, a -> a.date() + ": " + a.minutes() + " mins");
+        pets = new PetRegistry(this::loadPet, 64, 30 * 60_000);
+        Metrics.gauge("history_resident_bytes", historyCache::bytes);
+        if (root != null) root.setDisable(true); // until the first pet is shown
+        // Routines and the pet list are read in the background; the first pet opens once they are in.
+        CompletableFuture.supplyAsync(() -> {
+            db.loadRoutines().forEach(scheduler::adopt);
+            scheduler.start(60_000, due -> Platform.runLater(() -> notifyDue(due)));
+            petNames = db.listPets();
+            return petNames;
+        }, background).whenComplete((names, e) -> Platform.runLater(() -> {
+            if (e != null) alert("Load Failed", e.getMessage());
+            else showPets(names);
+            wanted = petIds.isEmpty() ? 1 : petIds.get(0);
+            selectPet(wanted);
+            open(wanted, () -> {
+                if (root != null) root.setDisable(false);
+                initTimer.record(start);
+            });
+        }));
+
+        snapshots = new Timeline(new KeyFrame(Duration.minutes(10), e -> {
+            for (PetProfile p : pets.loaded()) historyCache.track(p);
+            trimHistory();
+            saveSnapshots();
+        }));
+        snapshots.setCycleCount(Animation.INDEFINITE);
+        snapshots.play();
+    }
+
+    // Profiles are copied here on the FX thread; flushing and writing the files runs in the background.
+    private void saveSnapshots() {
+        List<Runnable> saves = new ArrayList<>();
+        for (PetProfile p : pets.loaded()) {
+            Runnable save = db.snapshot(p);
+            if (save != null) saves.add(save);
+        }
+        if (!saves.isEmpty()) background.execute(() -> saves.forEach(Runnable::run));
+    }
+
+    // Keeps resident history within the budget; evicted days are read from storage when asked for.
+    private void trimHistory() {
+        historyCache.trim(pets.loaded());
+    }
+
+    // Shows the pet, loading it on the background thread when it is not resident.
+    private void open(int id, Runnable shown) {
+        wanted = id;
+        PetProfile resident = pets.getIfLoaded(id);
+        if (resident != null) {
+            show(resident, shown);
+            return;
+        }
+        CompletableFuture.supplyAsync(() -> pets.get(id), background).whenComplete((p, e) -> Platform.runLater(() -> {
+            if (e != null) alert("Load Failed", e.getMessage());
+            else if (p.getId() == wanted) show(p, shown);
+        }));
+    }
+
+    private void show(PetProfile p, Runnable shown) {
+        pet = p;
+        historyCache.touch(p);
         init();
-        checkDue();
+        shown.run();
+    }
+
+    // Runs on the background thread; the profile is not visible to the FX thread until it returns.
+    private PetProfile loadPet(int id) {
+        db.flush();
+        PetProfile p = new PetProfile(id, petNames.getOrDefault(id, "Jojo"), Clock.systemDefaultZone());
+        db.loadSummary(p);
+        scheduler.adopt(id, p.getRoutines()); // only pets created since startup are new to it
+        // History arrives after the first paint; it is merged on the FX thread.
+        db.loadRecent(id, p.getVitals().capacity()).thenAccept(b -> Platform.runLater(() -> {
+            b.applyTo(p);
+            historyCache.track(p);
+            trimHistory();
+            if (p == pet) {
+                updateStats();
+                updateFood();
+                updateScratchAlert();
+            }
+        }));
+        return p;
+    }
+
+    // FX thread; names come from listPets() on the background thread.
+    private void showPets(Map<Integer, String> names) {
+        petIds.clear();
+        petIds.addAll(names.keySet());
+        if (petBox != null) petBox.getItems().setAll(names.values());
+    }
+
+    private void selectPet(int id) {
+        int idx = petIds.indexOf(id);
+        if (petBox != null && idx >= 0) petBox.getSelectionModel().select(idx);
+    }
+
+    @FXML
+    public void switchPet() {
+        int idx = petBox.getSelectionModel().getSelectedIndex();
+        if (idx < 0 || petIds.get(idx) == wanted) return;
+        long start = System.nanoTime();
+        pets.evictIdle();
+        open(petIds.get(idx), () -> switchTimer.record(start));
+    }
+
+    @FXML
+    public void addPet() {
+        String name = newPetName.getText();
+        if (name == null || name.trim().isEmpty()) {
+            alert("Invalid Input", "Pet name required.");
+            return;
+        }
+        String trimmed = name.trim();
+        CompletableFuture.supplyAsync(() -> {
+            int id = db.createPet(trimmed);
+            petNames = db.listPets();
+            return id;
+        }, background).whenComplete((id, e) -> Platform.runLater(() -> {
+            if (e != null) {
+                alert("Database Error", e.getMessage());
+                return;
+            }
+            showPets(petNames);
+            selectPet(id);
+            newPetName.clear();
+        }));
+    }
+
+    public void shutdown() {
+        scheduler.close();
+        if (snapshots != null) {
+            snapshots.stop();
+            saveSnapshots();
+        }
+        background.shutdown();
+        try {
+            // Pending snapshot saves need the database open.
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (db != null) db.close();
+        String file = System.getenv("METRICS_FILE");
+        if (file != null) {
+            try {
+                Metrics.writeTo(Paths.get(file));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     private void init() {
@@ -61,27 +300,43 @@ public class DashboardController {
         updateFood();
         updateRoutines();
         loadSettings();
-        updateGroomList();
-
-        foodList.getItems().clear();
-        foodList.getItems().addAll(pet.getMealLogs());
+        attachLogs();
+        updateScratchAlert();
+        updateWeightTrend();
+    }
 
-        wtList.getItems().clear();
-        wtList.getItems().addAll(pet.getWeightLogs());
+    // Rebuilds the lists for the current pet; from then on only changes are pushed.
+    private void attachLogs() {
+        if (listening != null) listening.setHistoryListener(null);
+        listening = pet;
+        pet.setHistoryListener(history);
 
-        updateHist();
+        mealModel.reset(pet.getMealRecords());
+        weightModel.reset(pet.getWeightRecords());
+        groomModel.reset(pet.getGroomingRecords());
+        actModel.reset(pet.getActivityRecords());
     }
 
-    private void updateHist() {
-        if (actHistList != null) {
-            actHistList.getItems().clear();
-            Map<LocalDate, Integer> acts = new TreeMap<>(pet.getDailyActivities()).descendingMap();
-            acts.forEach((d, m) -> actHistList.getItems().add(d + ": " + m + " mins"));
-        }
+    // One more window of history before what is resident, including any days the cache evicted.
+    @FXML
+    public void loadOlder() {
+        long start = System.nanoTime();
+        PetProfile p = pet;
+        if (p.getHistoryFrom() == null) return; // still loading
+        historyCache.ensure(db, p, p.getHistoryFrom().minusDays(historyDays), Platform::runLater).whenComplete((v, e) -> Platform.runLater(() -> {
+            if (e != null) {
+                olderTimer.error();
+                alert("Load Failed", e.getMessage());
+                return;
+            }
+            trimHistory();
+            olderTimer.record(start);
+        }));
     }
 
     @FXML
     public void saveStats() {
+        long start = System.nanoTime();
         try {
             int hr = Integer.parseInt(hrInput.getText());
             int rr = Integer.parseInt(rrInput.getText());
@@ -89,6 +344,7 @@ public class DashboardController {
             int scratch = Integer.parseInt(scratchInput.getText());
 
             if (hr < 0 || rr < 0 || act < 0 || scratch < 0) {
+                statsTimer.error();
                 alert("Invalid Input", "Values cannot be negative.");
                 return;
             }
@@ -96,20 +352,38 @@ public class DashboardController {
             pet.updateStats(hr, rr, act, scratch);
             db.saveStats(pet);
             updateStats();
-            updateHist();
 
             clear(hrInput, rrInput, actInput, scratchInput);
-            alert.setText("");
+            updateScratchAlert();
+            statsTimer.record(start);
 
         } catch (NumberFormatException e) {
+            statsTimer.error();
             alert("Invalid Input", "Please enter valid whole numbers.");
         }
     }
 
+    private void updateScratchAlert() {
+        ScratchMonitor m = pet.getScratchMonitor();
+        if (m.isAlerting()) {
+            alert.setText(String.format("⚠️ Scratch Index: unusual scratching (score %.1f, baseline %.1f). Possible allergic reaction.",
+                    m.getScore(), m.getMean()));
+        } else {
+            alert.setText("");
+        }
+    }
+
     private void updateStats() {
         hrLabel.setText(pet.getHr() + " bpm");
         rrLabel.setText(pet.getRr() + " /min");
 
+        if (vitalsLabel != null) {
+            VitalsBuffer.Summary v = pet.getVitals().summarize(System.currentTimeMillis() - 3_600_000);
+            vitalsLabel.setText(v.count() == 0 ? "No readings in the last hour" : String.format(
+                    "Last hour (min/avg/max): HR %d/%.0f/%d bpm, RR %d/%.0f/%d /min",
+                    v.minHr(), v.avgHr(), v.maxHr(), v.minRr(), v.avgRr(), v.maxRr()));
+        }
+
         double p = 0.0;
         if (pet.getTgtAct() > 0) p = (double) pet.getAct() / pet.getTgtAct();
         actBar.setProgress(Math.min(p, 1.0));
@@ -120,47 +394,75 @@ public class DashboardController {
 
     @FXML
     public void saveFood() {
+        long start = System.nanoTime();
         try {
             String name = foodName.getText();
             if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Meal name required");
 
             double amt = Double.parseDouble(foodAmt.getText());
             if (amt <= 0) {
+                foodTimer.error();
                 alert("Invalid Input", "Amount must be positive.");
                 return;
             }
 
             pet.addFood(name, amt);
-            db.addMeal(LocalDate.now(), name, amt);
-            foodList.getItems().add(LocalDate.now() + " | " + name + ": " + amt);
+            db.addMeal(pet.getId(), LocalDate.now(), name, amt);
             updateFood();
 
             clear(foodName, foodAmt);
+            foodTimer.record(start);
 
         } catch (NumberFormatException e) {
+             foodTimer.error();
              alert("Invalid Input", "Enter a valid number.");
         } catch (IllegalArgumentException e) {
+             foodTimer.error();
              alert("Invalid Input", e.getMessage());
         }
     }
 
+    private void updateWeightTrend() {
+        if (wtTrend == null) return;
+        WeightTrend t = pet.getWeightTrend();
+        if (t.size() == 0) {
+            wtTrend.setText("");
+            return;
+        }
+        String summary = String.format("%d-day avg %.2f kg (%+.1f%% vs ideal %.2f kg)",
+                t.windowDays(), t.mean(), t.deviationPct(pet.getOptWt()), pet.getOptWt());
+        WeightTrend.Direction d = t.direction();
+        if (d == WeightTrend.Direction.STABLE) {
+            wtTrend.setText(summary);
+        } else {
+            String move = String.format("%s %.2f kg/week", d == WeightTrend.Direction.GAINING ? "gaining" : "losing", Math.abs(t.weeklyChange()));
+            wtTrend.setText(t.isAlerting(pet.getOptWt())
+                    ? "⚠️ Sustained weight " + (d == WeightTrend.Direction.GAINING ? "gain" : "loss") + ": " + move + ", " + summary
+                    : summary + ", " + move);
+        }
+    }
+
     private void updateFood() {
         foodTotal.setText(pet.getDailyFoodIntake() + " / " + pet.getTgtFood());
+        if (foodWeek != null) foodWeek.setText(pet.getWeeklyFoodIntake() + " / " + pet.getTgtFood() * 7);
     }
 
     @FXML
     public void saveWt() {
+        long start = System.nanoTime();
         try {
             double wt = Double.parseDouble(wtInput.getText());
             if (wt <= 0) {
+                weightTimer.error();
                 alert("Invalid Input", "Weight must be positive.");
                 return;
             }
             pet.addWeight(wt);
-            db.addWeight(LocalDate.now(), wt);
-            wtList.getItems().add(LocalDate.now() + ": " + wt + " kg");
+            db.addWeight(pet.getId(), LocalDate.now(), wt);
             wtInput.clear();
+            weightTimer.record(start);
         } catch (NumberFormatException e) {
+            weightTimer.error();
             alert("Invalid Input", "Enter a valid weight.");
         }
     }
@@ -172,17 +474,14 @@ public class DashboardController {
     @FXML public void giveShower() { doRoutine(pet.getShower()); }
 
     private void doRoutine(Routine r) {
+        long start = System.nanoTime();
         r.done();
         pet.logGrooming(r.getName() + " Done");
-        db.updateRoutine(r);
-        db.addGroomingLog(LocalDate.now(), r.getName() + " Done");
-        updateGroomList();
+        db.updateRoutine(pet.getId(), r);
+        db.addGroomingLog(pet.getId(), LocalDate.now(), r.getName() + " Done");
+        scheduler.schedule(pet.getId(), r);
         updateRoutines();
-    }
-
-    private void updateGroomList() {
-        groomList.getItems().clear();
-        groomList.getItems().addAll(pet.getGroomingLogs());
+        routineTimer.record(start);
     }
 
     private void updateRoutines() {
@@ -191,16 +490,62 @@ public class DashboardController {
         groomLabel.setText(pet.getGroom().stat());
         nexLabel.setText(pet.getNexgard().stat());
         if (showerLabel != null) showerLabel.setText(pet.getShower().stat());
+        if (customRoutines != null) renderCustomRoutines();
+    }
+
+    private void renderCustomRoutines() {
+        customRoutines.getChildren().clear();
+        for (Routine r : pet.getRoutines()) {
+            if (PetProfile.isBuiltIn(r.getName())) continue;
+            Label label = new Label(r.stat());
+            label.setPrefWidth(200);
+            Button done = new Button("Mark Done");
+            done.setOnAction(e -> doRoutine(r));
+            Button remove = new Button("Remove");
+            remove.setOnAction(e -> removeRoutine(r));
+            HBox row = new HBox(15, label, done, remove);
+            row.setAlignment(Pos.CENTER_LEFT);
+            customRoutines.getChildren().add(row);
+        }
+    }
+
+    @FXML
+    public void addRoutine() {
+        try {
+            String name = newRoutineName.getText();
+            if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Routine name required");
+            int freq = Integer.parseInt(newRoutineFreq.getText());
+            if (pet.getRoutine(name.trim()) != null) throw new IllegalArgumentException("Routine already exists");
+
+            Routine r = pet.addRoutine(name.trim(), freq);
+            db.updateRoutine(pet.getId(), r);
+            scheduler.schedule(pet.getId(), r);
+            clear(newRoutineName, newRoutineFreq);
+            updateRoutines();
+        } catch (NumberFormatException e) {
+            alert("Invalid Input", "Enter a valid interval in days.");
+        } catch (IllegalArgumentException e) {
+            alert("Invalid Input", e.getMessage());
+        }
+    }
+
+    private void removeRoutine(Routine r) {
+        if (!pet.removeRoutine(r.getName())) return;
+        db.removeRoutine(pet.getId(), r.getName());
+        scheduler.cancel(pet.getId(), r.getName());
+        updateRoutines();
     }
 
     @FXML
     public void saveSettings() {
+        long start = System.nanoTime();
         try {
             int tgtAct = Integer.parseInt(tgtActInput.getText());
             double optWt = Double.parseDouble(optWtInput.getText());
             double tgtFood = Double.parseDouble(tgtFoodInput.getText());
 
             if (tgtAct < 0 || optWt <= 0 || tgtFood <= 0) {
+                settingsTimer.error();
                 alert("Invalid Settings", "Ensure all values are positive.");
                 return;
             }
@@ -214,10 +559,13 @@ public class DashboardController {
             updateFreq(pet.getShower(), showerIntInput);
 
             db.saveSettings(pet);
+            for (Routine r : pet.getRoutines()) scheduler.schedule(pet.getId(), r);
 
             updateFood();
             updateRoutines();
             updateStats();
+            updateWeightTrend();
+            settingsTimer.record(start);
 
             Alert a = new Alert(Alert.AlertType.INFORMATION);
             a.setTitle("Settings Saved");
@@ -226,8 +574,10 @@ public class DashboardController {
             a.showAndWait();
 
         } catch (NumberFormatException e) {
+            settingsTimer.error();
             alert("Invalid Settings", "Please ensure all fields contain valid numbers.");
         } catch (IllegalArgumentException e) {
+            settingsTimer.error();
             alert("Invalid Settings", e.getMessage());
         }
     }
@@ -255,25 +605,20 @@ public class DashboardController {
         updateRoutines();
     }
 
-    private void checkDue() {
+    private void notifyDue(List<RoutineScheduler.Due> due) {
         StringBuilder sb = new StringBuilder();
-        checkDue(pet.getTeeth(), sb);
-        checkDue(pet.getEars(), sb);
-        checkDue(pet.getGroom(), sb);
-        checkDue(pet.getNexgard(), sb);
-        checkDue(pet.getShower(), sb);
-
-        if (sb.length() > 0) {
-            Alert a = new Alert(Alert.AlertType.WARNING);
-            a.setTitle("Care Due");
-            a.setHeaderText("Action Required:");
-            a.setContentText(sb.toString());
-            a.showAndWait();
+        for (RoutineScheduler.Due d : due) {
+            sb.append("- ");
+            if (petNames.size() > 1) sb.append(petNames.getOrDefault(d.petId(), "Pet " + d.petId())).append(": ");
+            sb.append(d.routine().getName()).append("\n");
         }
-    }
+        if (pet != null) updateRoutines();
 
-    private void checkDue(Routine r, StringBuilder sb) {
-        if (r.dueIn() <= 0) sb.append("- ").append(r.getName()).append("\n");
+        Alert a = new Alert(Alert.AlertType.WARNING);
+        a.setTitle("Care Due");
+        a.setHeaderText("Action Required:");
+        a.setContentText(sb.toString());
+        a.show();
     }
 
     private void alert(String title, String content) {
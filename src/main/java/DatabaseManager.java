@@ -1,48 +1,302 @@
 import java.sql.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
-public class DatabaseManager {
+public class DatabaseManager implements Storage {
     private static final String url = System.getenv().getOrDefault("DB_URL", "jdbc:postgresql://localhost:5432/petmonitor");
     private static final String user = System.getenv().getOrDefault("DB_USER", "postgres");
     private static final String pass = System.getenv().getOrDefault("DB_PASS", "postgres");
+    private static final int poolSize = Integer.parseInt(System.getenv().getOrDefault("DB_POOL_SIZE", "4"));
+    private static final int historyDays = Integer.parseInt(System.getenv().getOrDefault("HISTORY_DAYS", "90"));
+    private static final long statsWindowMs = Long.parseLong(System.getenv().getOrDefault("STATS_WINDOW_MS", "250"));
+    private static final int fetchSize = 500;
+    private static final int exportFetchSize = 5000;
+    private static final int scratchReplay = 1000;
+    static final long vitalsEndMs = LocalDate.of(10000, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final Path snapshotDir = Paths.get(System.getenv().getOrDefault("SNAPSHOT_DIR",
+            Paths.get(System.getProperty("user.home"), ".dawgtracker", "snapshots").toString()));
+    private static final String[] rollupPeriods = {"week", "month"};
+
+    private static final Metrics.Timer connectTimer = Metrics.timer("db_connect");
+    private static final Metrics.Timer batchTimer = Metrics.timer("db_write_batch");
+    private static final Metrics.Timer listTimer = Metrics.timer("db_list_pets");
+    private static final Metrics.Timer createTimer = Metrics.timer("db_create_pet");
+    private static final Metrics.Timer summaryTimer = Metrics.timer("db_load_summary");
+    private static final Metrics.Timer mealsRead = Metrics.timer("db_load_meals");
+    private static final Metrics.Timer weightsRead = Metrics.timer("db_load_weights");
+    private static final Metrics.Timer groomingRead = Metrics.timer("db_load_grooming");
+    private static final Metrics.Timer activityRead = Metrics.timer("db_load_activity");
+    private static final Metrics.Timer scratchRead = Metrics.timer("db_load_scratch");
+    private static final Metrics.Timer vitalsRead = Metrics.timer("db_load_vitals");
+    private static final Metrics.Timer statsWrite = Metrics.timer("db_save_stats");
+    private static final Metrics.Timer vitalsWrite = Metrics.timer("db_add_vitals");
+    private static final Metrics.Timer settingsWrite = Metrics.timer("db_save_settings");
+    private static final Metrics.Timer mealWrite = Metrics.timer("db_add_meal");
+    private static final Metrics.Timer weightWrite = Metrics.timer("db_add_weight");
+    private static final Metrics.Timer groomWrite = Metrics.timer("db_add_grooming");
+    private static final Metrics.Timer routineWrite = Metrics.timer("db_update_routine");
+    private static final Metrics.Timer rollupRead = Metrics.timer("db_activity_history");
+    private static final Metrics.Timer rangeRead = Metrics.timer("db_range_query");
+    private static final Metrics.Timer snapshotTimer = Metrics.timer("db_save_snapshot");
+    private static final Metrics.Timer importTimer = Metrics.timer("db_bulk_import");
+    private static final Metrics.Timer exportTimer = Metrics.timer("db_export");
+
+    private final ConnectionPool pool;
+    private final Set<YearMonth> vitalsPartitions = ConcurrentHashMap.newKeySet();
+    private final WriteBehindQueue<Write> writes = new WriteBehindQueue<>("db-writer", this::writeBatch, 10_000, 256);
+    private final StatsCoalescer stats = new StatsCoalescer(statsWindowMs, this::writeStats);
+    private final LookupTable foods = new LookupTable("foods", "name", NameDictionary.FOODS, this::connect);
+    private final LookupTable groomingActions = new LookupTable("grooming_actions", "description", NameDictionary.GROOMING, this::connect);
+    // Every history write bumps the pet's data_version once. Counting the ones queued here tells a
+    // snapshot whether the version moved only by this client's writes since the profile was loaded.
+    // Dictionary entries upserted by the writer's open transaction; writer thread only.
+    private final Map<String, Integer> newFoods = new HashMap<>();
+    private final Map<String, Integer> newActions = new HashMap<>();
+    private final Map<Integer, AtomicLong> historyWrites = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> loadedVersions = new ConcurrentHashMap<>(); // version at load less writes queued by then
+    private final ExecutorService loader = Executors.newFixedThreadPool(poolSize, r -> {
+        Thread t = new Thread(r, "db-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public record ImportResult(long rows, long nanos) {
+        public double rowsPerSec() {
+            return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows in %d ms (%.0f rows/sec)", rows, nanos / 1_000_000, rowsPerSec());
+        }
+    }
+
+    public enum Resolution { DAY, WEEK, MONTH }
+
+    // One bar of activity history: a single day, or a week/month bucket from activity_rollup.
+    public record ActivityPoint(LocalDate start, Resolution resolution, long total, int days, int goalDays) {
+        public double mean() {
+            return days == 0 ? 0 : (double) total / days;
+        }
+
+        public double goalRatio() {
+            return days == 0 ? 0 : (double) goalDays / days;
+        }
+    }
+
+    private interface Write {
+        void apply(ConnectionPool.PooledConnection pc) throws SQLException;
+    }
+
+    private interface Read {
+        void apply(ConnectionPool.PooledConnection pc) throws SQLException;
+    }
+
+    private volatile boolean available;
 
     public DatabaseManager() {
+        this(new ConnectionPool(() -> DriverManager.getConnection(url, user, pass), poolSize));
+    }
+
+    DatabaseManager(ConnectionPool pool) {
+        this.pool = pool;
         try {
             init();
+            available = true;
+            Metrics.gauge("db_pool_available", pool::available);
+            Metrics.gauge("db_write_pending", writes::pending);
+            Metrics.gauge("db_stats_pending", stats::pending);
         } catch (SQLException e) {
             System.err.println("DB Init Failed: " + e.getMessage());
         }
     }
 
-    private Connection connect() throws SQLException {
-        return DriverManager.getConnection(url, user, pass);
+    private ConnectionPool.PooledConnection connect() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            ConnectionPool.PooledConnection pc = pool.borrow();
+            connectTimer.record(start);
+            return pc;
+        } catch (SQLException e) {
+            connectTimer.error();
+            throw e;
+        }
+    }
+
+    // Times each write where it runs, on the writer thread.
+    private void submit(Metrics.Timer timer, Write w) {
+        writes.submit(pc -> {
+            long start = System.nanoTime();
+            try {
+                w.apply(pc);
+                timer.record(start);
+            } catch (SQLException e) {
+                timer.error();
+                throw e;
+            }
+        });
     }
 
-    private void init() throws SQLException {
-        try (Connection conn = connect(); Statement s = conn.createStatement()) {
-            s.execute("CREATE TABLE IF NOT EXISTS pet_stats (" +
-                    "id INT PRIMARY KEY DEFAULT 1, hr INT, rr INT, act INT, scratch INT, " +
-                    "tgt_act INT, opt_wt DOUBLE PRECISION, tgt_food DOUBLE PRECISION, " +
-                    "last_updated DATE, CHECK (id = 1))");
+    // A meal, weight or grooming write; the version is bumped after the rows so a failed insert
+    // leaves it short and no snapshot can claim the rows.
+    private void submitHistory(Metrics.Timer timer, int petId, Write w) {
+        historyWrites.computeIfAbsent(petId, k -> new AtomicLong()).incrementAndGet();
+        submit(timer, pc -> {
+            w.apply(pc);
+            bumpVersion(pc, petId);
+        });
+    }
+
+    private static void bumpVersion(ConnectionPool.PooledConnection pc, int petId) throws SQLException {
+        PreparedStatement ps = pc.prepare("UPDATE pet_stats SET data_version = data_version + 1 WHERE id = ?");
+        ps.setInt(1, petId);
+        ps.executeUpdate();
+    }
+
+    public boolean isAvailable() { return available; }
+
+    @Override
+    public void flush() {
+        stats.flush();
+        writes.flush();
+    }
+
+    public boolean awaitFlush(long timeoutMs) throws InterruptedException {
+        return writes.awaitFlush(timeoutMs);
+    }
+
+    @Override
+    public void close() {
+        stats.close();
+        writes.close();
+        loader.shutdown();
+        pool.close();
+    }
+
+    private void writeBatch(List<Write> batch) throws SQLException {
+        long start = System.nanoTime();
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            Connection conn = pc.conn();
+            conn.setAutoCommit(false);
+            try {
+                for (Write w : batch) w.apply(pc);
+                conn.commit();
+                namesCommitted(true);
+                batchTimer.record(start);
+                return;
+            } catch (SQLException e) {
+                batchTimer.error();
+                namesCommitted(false);
+                try {
+                    conn.rollback();
+                } catch (SQLException dead) {
+                    e.addSuppressed(dead);
+                }
+                if (conn.isValid(2)) {
+                    if (batch.size() == 1) throw e;
+                    writeEach(pc, batch);
+                    return;
+                }
+            }
+        }
+        // The connection broke mid-batch and the pool discards it; replay on a fresh one.
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            writeEach(pc, batch);
+        }
+    }
 
+    // One bad write must not take the rest of the batch down with it.
+    private void writeEach(ConnectionPool.PooledConnection pc, List<Write> batch) throws SQLException {
+        pc.conn().setAutoCommit(true);
+        for (Write w : batch) {
             try {
-                s.execute("ALTER TABLE pet_stats ADD COLUMN IF NOT EXISTS last_updated DATE");
-            } catch (SQLException ignored) {}
+                w.apply(pc);
+                namesCommitted(true);
+            } catch (SQLException e) {
+                namesCommitted(false);
+                e.printStackTrace();
+            }
+        }
+    }
 
-            s.execute("INSERT INTO pet_stats (id, hr, rr, act, scratch, tgt_act, opt_wt, tgt_food, last_updated) " +
-                    "VALUES (1, 0, 0, 0, 0, 60, 6.5, 2.0, CURRENT_DATE) ON CONFLICT (id) DO NOTHING");
+    // Dictionary entries the writes looked up are cached only once their transaction has committed;
+    // after a rollback they are looked up again.
+    private void namesCommitted(boolean committed) {
+        if (committed) {
+            foods.committed(newFoods);
+            groomingActions.committed(newActions);
+        } else {
+            newFoods.clear();
+            newActions.clear();
+        }
+    }
 
-            s.execute("CREATE TABLE IF NOT EXISTS meals (id SERIAL PRIMARY KEY, date DATE, name VARCHAR(255), amount DOUBLE PRECISION)");
-            s.execute("CREATE TABLE IF NOT EXISTS weights (id SERIAL PRIMARY KEY, date DATE, weight DOUBLE PRECISION)");
-            s.execute("CREATE TABLE IF NOT EXISTS grooming_logs (id SERIAL PRIMARY KEY, date DATE, description TEXT)");
-            s.execute("CREATE TABLE IF NOT EXISTS routines (name VARCHAR(255) PRIMARY KEY, last_done DATE, interval_days INT)");
-            s.execute("CREATE TABLE IF NOT EXISTS daily_activity (date DATE PRIMARY KEY, minutes INT)");
+    private void init() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            int applied = SchemaMigrations.run(pc.conn());
+            if (applied > 0) System.out.println("Applied " + applied + " schema migrations");
         }
     }
 
-    public void loadProfile(PetProfile p) {
-        try (Connection conn = connect()) {
-            try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery("SELECT * FROM pet_stats WHERE id = 1")) {
+    @Override
+    public Map<Integer, String> listPets() {
+        Map<Integer, String> pets = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        try (ConnectionPool.PooledConnection pc = connect();
+             ResultSet rs = pc.prepare("SELECT id, name FROM pet_stats ORDER BY id").executeQuery()) {
+            while (rs.next()) pets.put(rs.getInt(1), rs.getString(2));
+            listTimer.record(start);
+        } catch (SQLException e) {
+            listTimer.error();
+            System.err.println("Load failed: " + e.getMessage());
+        }
+        return pets;
+    }
+
+    @Override
+    public int createPet(String name) {
+        long start = System.nanoTime();
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            PreparedStatement ps = pc.prepare("INSERT INTO pet_stats (id, name, hr, rr, act, scratch, tgt_act, opt_wt, tgt_food, last_updated) " +
+                    "VALUES (nextval('pet_id_seq'), ?, 0, 0, 0, 0, 60, 6.5, 2.0, CURRENT_DATE) RETURNING id");
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                createTimer.record(start);
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            createTimer.error();
+            throw new IllegalStateException("Could not create pet: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void loadSummary(PetProfile p) {
+        long start = System.nanoTime();
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            PreparedStatement stats = pc.prepare("SELECT * FROM pet_stats WHERE id = ?");
+            stats.setInt(1, p.getId());
+            try (ResultSet rs = stats.executeQuery()) {
                 if (rs.next()) {
                     int hr = rs.getInt("hr");
                     int rr = rs.getInt("rr");
@@ -54,148 +308,815 @@ public class DatabaseManager {
 
                     if (last.isBefore(LocalDate.now())) {
                         hr = 0; rr = 0; act = 0;
-                        saveStatsInternal(conn, 0, 0, 0, scratch);
+                        saveStatsInternal(pc, p.getId(), 0, 0, 0, scratch);
                     }
 
-                    p.updateStats(hr, rr, act, scratch);
+                    p.restoreStats(hr, rr, act, scratch);
                     p.setTargets(rs.getInt("tgt_act"), rs.getDouble("opt_wt"), rs.getDouble("tgt_food"));
                 }
             }
 
-            try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery("SELECT * FROM meals ORDER BY date")) {
-                while (rs.next()) p.addMeal(rs.getDate("date").toLocalDate(), rs.getString("name"), rs.getDouble("amount"));
+            PreparedStatement routines = pc.prepare("SELECT * FROM routines WHERE pet_id = ?");
+            routines.setInt(1, p.getId());
+            try (ResultSet rs = routines.executeQuery()) {
+                while (rs.next()) {
+                    Routine r = p.addRoutine(rs.getString("name"), rs.getInt("interval_days"));
+                    r.setLast(rs.getDate("last_done").toLocalDate());
+                    r.setFreq(rs.getInt("interval_days"));
+                }
             }
+            summaryTimer.record(start);
+        } catch (SQLException e) {
+            summaryTimer.error();
+            System.err.println("Load failed: " + e.getMessage());
+        }
+    }
+
+    // Starts from the pet's snapshot when it is still valid and only fetches rows added since.
+    // The highest ids are read on the calling thread before returning and the load stops at them,
+    // so an entry saved to the profile while the batch is in flight is not loaded a second time.
+    @Override
+    public CompletableFuture<HistoryBatch> loadRecent(int petId, int vitalsCapacity) {
+        LocalDate today = LocalDate.now();
+        long queued = queuedWrites(petId);
+        long[] upTo = stamp(petId);
+        if (upTo != null) loadedVersions.put(petId, upTo[0] - queued);
+        else loadedVersions.remove(petId);
+        return CompletableFuture.supplyAsync(() -> usableSnapshot(petId, upTo), loader).thenCompose(snap -> snap == null
+                ? fetchHistory(petId, today.minusDays(historyDays - 1), today.plusDays(1), vitalsCapacity, null, upTo)
+                : fetchHistory(petId, snap.history.from, today.plusDays(1), vitalsCapacity, snap, upTo));
+    }
+
+    private ProfileSnapshot usableSnapshot(int petId, long[] stamp) {
+        if (stamp == null) return null;
+        ProfileSnapshot snap = ProfileSnapshot.read(snapshotFile(petId));
+        if (snap == null || snap.petId != petId || snap.taken.isBefore(LocalDate.now().minusDays(historyDays))) return null;
+        // A bumped version means rows were written since; lower ids mean the tables were reset.
+        if (stamp[0] != snap.dataVersion || stamp[1] < snap.lastMealId || stamp[2] < snap.lastWeightId || stamp[3] < snap.lastGroomId) return null;
+        return snap;
+    }
+
+    // Null if the pet or the database cannot be read.
+    private long[] stamp(int petId) {
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            return stamp(pc, petId);
+        } catch (SQLException e) {
+            System.err.println("Load failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Data version, then the highest meal, weight and grooming ids for the pet.
+    private long[] stamp(ConnectionPool.PooledConnection pc, int petId) throws SQLException {
+        PreparedStatement ps = pc.prepare("SELECT data_version, " +
+                "(SELECT coalesce(max(id), 0) FROM meals WHERE pet_id = ?), " +
+                "(SELECT coalesce(max(id), 0) FROM weights WHERE pet_id = ?), " +
+                "(SELECT coalesce(max(id), 0) FROM grooming_logs WHERE pet_id = ?) FROM pet_stats WHERE id = ?");
+        for (int i = 1; i <= 4; i++) ps.setInt(i, petId);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) throw new SQLException("No pet " + petId);
+            return new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)};
+        }
+    }
+
+    private static Path snapshotFile(int petId) {
+        return snapshotDir.resolve("pet-" + petId + ".snap");
+    }
+
+    private long queuedWrites(int petId) {
+        AtomicLong n = historyWrites.get(petId);
+        return n == null ? 0 : n.get();
+    }
 
-            try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery("SELECT * FROM weights ORDER BY date")) {
-                while (rs.next()) p.addWeight(rs.getDate("date").toLocalDate(), rs.getDouble("weight"));
+    // Copies the profile now; the save flushes pending writes and only keeps the copy if the version
+    // shows no other writer since the load, in which case the table's highest ids are exactly the
+    // rows the copy holds.
+    @Override
+    public Runnable snapshot(PetProfile p) {
+        Long base = loadedVersions.get(p.getId());
+        if (base == null || p.getHistoryFrom() == null) return null;
+        int petId = p.getId();
+        long expected = base + queuedWrites(petId);
+        HistoryBatch image = HistoryBatch.of(p);
+        return () -> {
+            long start = System.nanoTime();
+            flush();
+            try (ConnectionPool.PooledConnection pc = connect()) {
+                long[] stamp = stamp(pc, petId);
+                if (stamp[0] != expected) {
+                    loadedVersions.remove(petId);
+                    return;
+                }
+                ProfileSnapshot.write(snapshotFile(petId), petId, image, stamp[0], stamp[1], stamp[2], stamp[3]);
+                snapshotTimer.record(start);
+            } catch (SQLException | IOException e) {
+                snapshotTimer.error();
+                System.err.println("Snapshot failed: " + e.getMessage());
+            }
+        };
+    }
+
+    @Override
+    public CompletableFuture<HistoryBatch> loadOlder(PetProfile p) {
+        LocalDate to = p.getHistoryFrom() != null ? p.getHistoryFrom() : LocalDate.now().plusDays(1);
+        return loadHistory(p.getId(), to.minusDays(historyDays), to);
+    }
+
+    @Override
+    public CompletableFuture<HistoryBatch> loadHistory(int petId, LocalDate from, LocalDate to) {
+        return fetchHistory(petId, from, to, 0, null, null);
+    }
+
+    // Loads [from, to), one table per pooled connection so the queries overlap.
+    // A positive vitalsCapacity also replays the scratch monitor and the vitals buffer.
+    // With a snapshot, its records seed the batch and only rows past its ids are read.
+    private CompletableFuture<HistoryBatch> fetchHistory(int petId, LocalDate from, LocalDate to, int vitalsCapacity, ProfileSnapshot since, long[] upTo) {
+        HistoryBatch b = since != null ? since.history : new HistoryBatch(from);
+        long mealId = since != null ? since.lastMealId : 0;
+        long weightId = since != null ? since.lastWeightId : 0;
+        long groomId = since != null ? since.lastGroomId : 0;
+        long mealTo = upTo != null ? upTo[1] : Long.MAX_VALUE;
+        long weightTo = upTo != null ? upTo[2] : Long.MAX_VALUE;
+        long groomTo = upTo != null ? upTo[3] : Long.MAX_VALUE;
+        // Activity is upserted by day, so re-read everything from the day the snapshot was taken.
+        LocalDate actFrom = since != null ? since.taken : from;
+        b.activity.removeIf(a -> !a.date().isBefore(actFrom));
+        List<CompletableFuture<Void>> parts = new ArrayList<>();
+
+        parts.add(read(mealsRead, pc -> {
+            try (ResultSet rs = queryAfter(pc, "SELECT date, food_id, amount FROM meals WHERE pet_id = ? AND date >= ? AND date < ? AND id > ? AND id <= ? ORDER BY date, id", petId, from, to, mealId, mealTo)) {
+                while (rs.next()) b.meals.add(new HistoryRecord.Meal(rs.getDate(1).toLocalDate(), foods.code(pc, rs.getInt(2)), rs.getDouble(3)));
+            }
+        }));
+
+        parts.add(read(weightsRead, pc -> {
+            try (ResultSet rs = queryAfter(pc, "SELECT date, weight FROM weights WHERE pet_id = ? AND date >= ? AND date < ? AND id > ? AND id <= ? ORDER BY date, id", petId, from, to, weightId, weightTo)) {
+                while (rs.next()) b.weights.add(new HistoryRecord.Weight(rs.getDate(1).toLocalDate(), rs.getDouble(2)));
             }
+        }));
 
-            try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery("SELECT * FROM grooming_logs ORDER BY date")) {
-                while (rs.next()) p.logGrooming(rs.getDate("date").toLocalDate(), rs.getString("description"));
+        parts.add(read(groomingRead, pc -> {
+            try (ResultSet rs = queryAfter(pc, "SELECT date, action_id FROM grooming_logs WHERE pet_id = ? AND date >= ? AND date < ? AND id > ? AND id <= ? ORDER BY date, id", petId, from, to, groomId, groomTo)) {
+                while (rs.next()) b.grooming.add(new HistoryRecord.Grooming(rs.getDate(1).toLocalDate(), groomingActions.code(pc, rs.getInt(2))));
             }
+        }));
+
+        parts.add(read(activityRead, pc -> {
+            try (ResultSet rs = queryRange(pc, "SELECT date, minutes FROM daily_activity WHERE pet_id = ? AND date >= ? AND date < ?", petId, actFrom, to)) {
+                while (rs.next()) b.activity.add(new HistoryRecord.Activity(rs.getDate(1).toLocalDate(), rs.getInt(2)));
+            }
+        }));
+
+        if (vitalsCapacity > 0) {
+            parts.add(read(scratchRead, pc -> b.scratch = replayScratch(pc, petId)));
+            parts.add(read(vitalsRead, pc -> loadRecentVitals(pc, petId, vitalsCapacity, b)));
+        }
+
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(v -> b);
+    }
+
+    // Failures are logged and leave that part of the batch empty, as the sequential load did.
+    private CompletableFuture<Void> read(Metrics.Timer timer, Read r) {
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            try (ConnectionPool.PooledConnection pc = connect()) {
+                pc.conn().setAutoCommit(false);
+                r.apply(pc);
+                pc.conn().commit();
+                timer.record(start);
+            } catch (SQLException e) {
+                timer.error();
+                System.err.println("Load failed: " + e.getMessage());
+            }
+        }, loader);
+    }
+
+    // The EWMA forgets older samples geometrically, so the tail is enough to rebuild its state.
+    private int[] replayScratch(ConnectionPool.PooledConnection pc, int petId) throws SQLException {
+        PreparedStatement ps = pc.prepare("SELECT scratch FROM (SELECT id, scratch FROM scratch_log WHERE pet_id = ? ORDER BY id DESC LIMIT ?) t ORDER BY id");
+        ps.setFetchSize(fetchSize);
+        ps.setInt(1, petId);
+        ps.setInt(2, scratchReplay);
+        int[] out = new int[scratchReplay];
+        int n = 0;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) out[n++] = rs.getInt(1);
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private void loadRecentVitals(ConnectionPool.PooledConnection pc, int petId, int capacity, HistoryBatch b) throws SQLException {
+        PreparedStatement ps = pc.prepare("SELECT ms, hr, rr FROM (SELECT (extract(epoch FROM ts) * 1000)::BIGINT AS ms, hr, rr " +
+                "FROM vitals WHERE pet_id = ? ORDER BY ts DESC LIMIT ?) t ORDER BY ms");
+        ps.setFetchSize(fetchSize);
+        ps.setInt(1, petId);
+        ps.setInt(2, capacity);
+        long[] ms = new long[capacity];
+        int[] hr = new int[capacity], rr = new int[capacity];
+        int n = 0;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                ms[n] = rs.getLong(1);
+                hr[n] = rs.getInt(2);
+                rr[n] = rs.getInt(3);
+                n++;
+            }
+        }
+        b.vitalsMs = ms;
+        b.vitalsHr = hr;
+        b.vitalsRr = rr;
+        b.vitalsCount = n;
+    }
 
-            try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery("SELECT * FROM routines")) {
+    private ResultSet queryRange(ConnectionPool.PooledConnection pc, String sql, int petId, LocalDate from, LocalDate to) throws SQLException {
+        return rangeStatement(pc, sql, petId, from, to).executeQuery();
+    }
+
+    // Rows with ids in (afterId, upToId].
+    private ResultSet queryAfter(ConnectionPool.PooledConnection pc, String sql, int petId, LocalDate from, LocalDate to, long afterId, long upToId) throws SQLException {
+        PreparedStatement ps = rangeStatement(pc, sql, petId, from, to);
+        ps.setLong(4, afterId);
+        ps.setLong(5, upToId);
+        return ps.executeQuery();
+    }
+
+    private PreparedStatement rangeStatement(ConnectionPool.PooledConnection pc, String sql, int petId, LocalDate from, LocalDate to) throws SQLException {
+        PreparedStatement ps = pc.prepare(sql);
+        ps.setFetchSize(fetchSize);
+        ps.setInt(1, petId);
+        ps.setDate(2, java.sql.Date.valueOf(from));
+        ps.setDate(3, java.sql.Date.valueOf(to));
+        return ps;
+    }
+
+    @Override
+    public void saveStats(PetProfile p) {
+        stats.update(p.getId(), LocalDate.now(), System.currentTimeMillis(), p.getHr(), p.getRr(), p.getAct(), p.getScratch());
+    }
+
+    // One write per window: each pet's latest stats and daily activity, plus every scratch and vitals sample.
+    private void writeStats(List<StatsCoalescer.Pending> batch) {
+        for (StatsCoalescer.Pending p : batch) ensureVitalsPartitions(p.vitalsMs, p.samples);
+        submit(statsWrite, pc -> {
+            for (StatsCoalescer.Pending p : batch) {
+                saveStatsInternal(pc, p.petId, p.hr, p.rr, p.act, p.scratch);
+                for (Map.Entry<LocalDate, Integer> e : p.activity.entrySet()) saveActivity(pc, p.petId, e.getKey(), e.getValue());
+                logScratch(pc, p.petId, p.scratches, p.samples);
+                insertVitals(pc, p.petId, p.vitalsMs, p.vitalsHr, p.vitalsRr, p.samples);
+            }
+        });
+    }
+
+    // Arrays are copied, so callers may reuse their buffers straight away.
+    // Throws IllegalArgumentException for a timestamp before 1970 or past year 9999.
+    @Override
+    public void addVitals(int petId, long[] millis, int[] hr, int[] rr, int count) {
+        if (count == 0) return;
+        ensureVitalsPartitions(millis, count);
+        long[] t = Arrays.copyOf(millis, count);
+        int[] h = Arrays.copyOf(hr, count);
+        int[] r = Arrays.copyOf(rr, count);
+        submit(vitalsWrite, pc -> insertVitals(pc, petId, t, h, r, count));
+    }
+
+    private void insertVitals(ConnectionPool.PooledConnection pc, int petId, long[] millis, int[] hr, int[] rr, int count) throws SQLException {
+        PreparedStatement ps = pc.prepare("INSERT INTO vitals (pet_id, ts, hr, rr) VALUES (?, to_timestamp(? / 1000.0), ?, ?)");
+        ps.setInt(1, petId);
+        for (int i = 0; i < count; i++) {
+            ps.setLong(2, millis[i]);
+            ps.setInt(3, hr[i]);
+            ps.setInt(4, rr[i]);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+    }
+
+    // Runs on the submitting thread, before the rows are queued. Each partition is created in its own
+    // autocommit statement, so the parent's exclusive lock is never held for a whole write batch, and
+    // a month is only cached once its partition is committed.
+    private void ensureVitalsPartitions(long[] millis, int count) {
+        for (int i = 0; i < count; i++) {
+            if (millis[i] < 0 || millis[i] >= vitalsEndMs) throw new IllegalArgumentException("Vitals timestamp out of range: " + millis[i]);
+        }
+        long monthStart = Long.MAX_VALUE, monthEnd = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (millis[i] >= monthStart && millis[i] < monthEnd) continue;
+            YearMonth ym = YearMonth.from(java.time.Instant.ofEpochMilli(millis[i]).atZone(ZoneOffset.UTC));
+            monthStart = ym.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            monthEnd = ym.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            if (vitalsPartitions.contains(ym)) continue;
+            String name = String.format("vitals_%04d_%02d", ym.getYear(), ym.getMonthValue());
+            try (ConnectionPool.PooledConnection pc = connect(); Statement s = pc.conn().createStatement()) {
+                s.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF vitals FOR VALUES FROM ('" +
+                        ym.atDay(1) + " 00:00:00+00') TO ('" + ym.plusMonths(1).atDay(1) + " 00:00:00+00')");
+                vitalsPartitions.add(ym);
+            } catch (SQLException e) {
+                // The insert will fail and be logged by the writer; the month is retried next time.
+                System.err.println("Write failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void saveStatsInternal(ConnectionPool.PooledConnection pc, int petId, int hr, int rr, int act, int scratch) throws SQLException {
+        PreparedStatement ps = pc.prepare("UPDATE pet_stats SET hr=?, rr=?, act=?, scratch=?, last_updated=? WHERE id=?");
+        ps.setInt(1, hr);
+        ps.setInt(2, rr);
+        ps.setInt(3, act);
+        ps.setInt(4, scratch);
+        ps.setDate(5, java.sql.Date.valueOf(LocalDate.now()));
+        ps.setInt(6, petId);
+        ps.executeUpdate();
+    }
+
+    private void saveActivity(ConnectionPool.PooledConnection pc, int petId, LocalDate date, int minutes) throws SQLException {
+        PreparedStatement ps = pc.prepare("INSERT INTO daily_activity (pet_id, date, minutes) VALUES (?, ?, ?) " +
+                "ON CONFLICT (pet_id, date) DO UPDATE SET minutes=EXCLUDED.minutes");
+        ps.setInt(1, petId);
+        ps.setDate(2, java.sql.Date.valueOf(date));
+        ps.setInt(3, minutes);
+        ps.executeUpdate();
+        refreshRollups(pc, petId, date, date);
+    }
+
+    // Re-aggregates the week and month buckets covering [from, to]; a single day touches two small buckets.
+    private void refreshRollups(ConnectionPool.PooledConnection pc, int petId, LocalDate from, LocalDate to) throws SQLException {
+        for (String period : rollupPeriods) {
+            PreparedStatement ps = pc.prepare(rollupSql(period, "AND d.pet_id = ? AND d.date >= date_trunc('" + period + "', ?::date) " +
+                    "AND d.date < date_trunc('" + period + "', ?::date) + interval '1 " + period + "' "));
+            ps.setInt(1, petId);
+            ps.setDate(2, java.sql.Date.valueOf(from));
+            ps.setDate(3, java.sql.Date.valueOf(to));
+            ps.executeUpdate();
+        }
+    }
+
+    private static String rollupSql(String period, String filter) {
+        return "INSERT INTO activity_rollup (pet_id, period, start, total, days, goal_days) " +
+                "SELECT d.pet_id, '" + period + "', date_trunc('" + period + "', d.date)::date, SUM(d.minutes), COUNT(*), " +
+                "COUNT(*) FILTER (WHERE d.minutes >= s.tgt_act) " +
+                "FROM daily_activity d JOIN pet_stats s ON s.id = d.pet_id WHERE TRUE " + filter +
+                "GROUP BY 1, 2, 3 ON CONFLICT (pet_id, period, start) DO UPDATE SET " +
+                "total = EXCLUDED.total, days = EXCLUDED.days, goal_days = EXCLUDED.goal_days";
+    }
+
+    // Finest resolution that still fits in maxPoints bars.
+    public static Resolution resolutionFor(LocalDate from, LocalDate to, int maxPoints) {
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days <= maxPoints) return Resolution.DAY;
+        if (days / 7 + 1 <= maxPoints) return Resolution.WEEK;
+        return Resolution.MONTH;
+    }
+
+    // Inclusive of both ends; week and month buckets are returned if they start in the range's first bucket or later.
+    public List<ActivityPoint> activityHistory(int petId, LocalDate from, LocalDate to, int maxPoints) {
+        Resolution res = resolutionFor(from, to, maxPoints);
+        List<ActivityPoint> points = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            PreparedStatement ps;
+            if (res == Resolution.DAY) {
+                ps = pc.prepare("SELECT d.date, d.minutes, 1, CASE WHEN d.minutes >= s.tgt_act THEN 1 ELSE 0 END " +
+                        "FROM daily_activity d JOIN pet_stats s ON s.id = d.pet_id WHERE d.pet_id = ? AND d.date >= ? AND d.date <= ? ORDER BY d.date");
+                ps.setInt(1, petId);
+                ps.setDate(2, java.sql.Date.valueOf(from));
+                ps.setDate(3, java.sql.Date.valueOf(to));
+            } else {
+                String period = res == Resolution.WEEK ? "week" : "month";
+                ps = pc.prepare("SELECT start, total, days, goal_days FROM activity_rollup " +
+                        "WHERE pet_id = ? AND period = ? AND start >= date_trunc(?, ?::date) AND start <= ? ORDER BY start");
+                ps.setInt(1, petId);
+                ps.setString(2, period);
+                ps.setString(3, period);
+                ps.setDate(4, java.sql.Date.valueOf(from));
+                ps.setDate(5, java.sql.Date.valueOf(to));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Routine r = getRoutine(p, rs.getString("name"));
-                    if (r != null) {
-                        r.setLast(rs.getDate("last_done").toLocalDate());
-                        r.setFreq(rs.getInt("interval_days"));
-                    }
+                    points.add(new ActivityPoint(rs.getDate(1).toLocalDate(), res, rs.getLong(2), rs.getInt(3), rs.getInt(4)));
                 }
             }
+            rollupRead.record(start);
+        } catch (SQLException e) {
+            rollupRead.error();
+            System.err.println("Load failed: " + e.getMessage());
+        }
+        return points;
+    }
 
-             try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery("SELECT * FROM daily_activity")) {
-                while (rs.next()) p.addDailyActivity(rs.getDate("date").toLocalDate(), rs.getInt("minutes"));
-            }
+    // Range queries, inclusive of both ends. The profile overloads answer whatever part of the range
+    // is already loaded from memory, which also covers writes not yet flushed, and send only the
+    // older remainder to Postgres, where it is aggregated over the (pet_id, date) indexes.
+    public double foodTotal(PetProfile p, LocalDate from, LocalDate to) {
+        LocalDate split = cachedFrom(p, from, to);
+        double sql = split.isAfter(from) ? foodTotal(p.getId(), from, split.minusDays(1)) : 0;
+        return sql + p.getFoodIntake(split, to);
+    }
+
+    public DaySeries foodByDay(PetProfile p, LocalDate from, LocalDate to) {
+        LocalDate split = cachedFrom(p, from, to);
+        DaySeries out = split.isAfter(from) ? foodByDay(p.getId(), from, split.minusDays(1)) : new DaySeries();
+        DaySeries.View v = p.getDailyFoodTotals(split, to).all();
+        for (int i = 0; i < v.size(); i++) out.put(v.date(i), v.value(i));
+        return out;
+    }
+
+    // Amount eaten per food, largest first.
+    public Map<String, Double> foodTotals(PetProfile p, LocalDate from, LocalDate to) {
+        LocalDate split = cachedFrom(p, from, to);
+        double[] byFood = split.isAfter(from) ? foodTotalsByCode(p.getId(), from, split.minusDays(1)) : new double[0];
+        double[] mem = p.getFoodTotalsByCode(split, to);
+        if (mem.length > byFood.length) byFood = Arrays.copyOf(byFood, mem.length);
+        for (int i = 0; i < mem.length; i++) byFood[i] += mem[i];
+        return PetProfile.byAmount(byFood);
+    }
+
+    public DaySeries weightSeries(PetProfile p, LocalDate from, LocalDate to) {
+        LocalDate split = cachedFrom(p, from, to);
+        DaySeries out = split.isAfter(from) ? weightSeries(p.getId(), from, split.minusDays(1)) : new DaySeries();
+        DaySeries.View v = p.getWeightSeries(split, to);
+        for (int i = 0; i < v.size(); i++) out.add(v.date(i), v.value(i));
+        return out;
+    }
+
+    public int goalDays(PetProfile p, LocalDate from, LocalDate to) {
+        LocalDate split = cachedFrom(p, from, to);
+        int sql = split.isAfter(from) ? goalDays(p.getId(), from, split.minusDays(1)) : 0;
+        return sql + p.getGoalDays(split, to);
+    }
+
+    // First day of [from, to] held in memory; past the end when none of it is.
+    private static LocalDate cachedFrom(PetProfile p, LocalDate from, LocalDate to) {
+        if (p.covers(from)) return from;
+        LocalDate end = to.plusDays(1);
+        return p.getHistoryFrom() == null || p.getHistoryFrom().isAfter(end) ? end : p.getHistoryFrom();
+    }
+
+    public double foodTotal(int petId, LocalDate from, LocalDate to) {
+        double[] total = {0};
+        rangeQuery("SELECT COALESCE(SUM(amount), 0) FROM meals WHERE pet_id = ? AND date >= ? AND date <= ?",
+                petId, from, to, rs -> total[0] = rs.getDouble(1));
+        return total[0];
+    }
+
+    public DaySeries foodByDay(int petId, LocalDate from, LocalDate to) {
+        DaySeries out = new DaySeries();
+        rangeQuery("SELECT date, SUM(amount) FROM meals WHERE pet_id = ? AND date >= ? AND date <= ? GROUP BY date ORDER BY date",
+                petId, from, to, rs -> out.put(rs.getDate(1).toLocalDate(), rs.getDouble(2)));
+        return out;
+    }
+
+    public Map<String, Double> foodTotals(int petId, LocalDate from, LocalDate to) {
+        return PetProfile.byAmount(foodTotalsByCode(petId, from, to));
+    }
 
+    // Grouped on the integer food id; names come from the lookup mirror, indexed by NameDictionary code.
+    private double[] foodTotalsByCode(int petId, LocalDate from, LocalDate to) {
+        Map<Integer, Double> byId = new HashMap<>();
+        rangeQuery("SELECT food_id, SUM(amount) FROM meals WHERE pet_id = ? AND date >= ? AND date <= ? AND food_id IS NOT NULL GROUP BY food_id",
+                petId, from, to, rs -> byId.put(rs.getInt(1), rs.getDouble(2)));
+        double[] out = new double[NameDictionary.FOODS.size()];
+        try {
+            for (Map.Entry<Integer, Double> e : byId.entrySet()) {
+                int code = foods.code(e.getKey());
+                if (code == NameDictionary.NONE) continue;
+                if (code >= out.length) out = Arrays.copyOf(out, NameDictionary.FOODS.size());
+                out[code] += e.getValue();
+            }
         } catch (SQLException e) {
             System.err.println("Load failed: " + e.getMessage());
         }
+        return out;
     }
 
-    private Routine getRoutine(PetProfile p, String name) {
-        if (p.getTeeth().getName().equals(name)) return p.getTeeth();
-        if (p.getEars().getName().equals(name)) return p.getEars();
-        if (p.getGroom().getName().equals(name)) return p.getGroom();
-        if (p.getNexgard().getName().equals(name)) return p.getNexgard();
-        if (p.getShower().getName().equals(name)) return p.getShower();
-        return null;
+    public DaySeries weightSeries(int petId, LocalDate from, LocalDate to) {
+        DaySeries out = new DaySeries();
+        rangeQuery("SELECT date, weight FROM weights WHERE pet_id = ? AND date >= ? AND date <= ? ORDER BY date, id",
+                petId, from, to, rs -> out.add(rs.getDate(1).toLocalDate(), rs.getDouble(2)));
+        return out;
     }
 
-    public void saveStats(PetProfile p) {
-        try (Connection conn = connect()) {
-            saveStatsInternal(conn, p.getHr(), p.getRr(), p.getAct(), p.getScratch());
-            saveActivity(conn, LocalDate.now(), p.getAct());
+    // Days that met the pet's stored activity target, as in activity_rollup.
+    public int goalDays(int petId, LocalDate from, LocalDate to) {
+        int[] n = {0};
+        rangeQuery("SELECT COUNT(*) FROM daily_activity d JOIN pet_stats s ON s.id = d.pet_id " +
+                "WHERE d.pet_id = ? AND d.date >= ? AND d.date <= ? AND d.minutes >= s.tgt_act",
+                petId, from, to, rs -> n[0] = rs.getInt(1));
+        return n[0];
+    }
+
+    private interface Row {
+        void accept(ResultSet rs) throws SQLException;
+    }
+
+    private void rangeQuery(String sql, int petId, LocalDate from, LocalDate to, Row row) {
+        if (from.isAfter(to)) return;
+        long start = System.nanoTime();
+        try (ConnectionPool.PooledConnection pc = connect(); ResultSet rs = queryRange(pc, sql, petId, from, to)) {
+            while (rs.next()) row.accept(rs);
+            rangeRead.record(start);
         } catch (SQLException e) {
-            e.printStackTrace();
+            rangeRead.error();
+            System.err.println("Load failed: " + e.getMessage());
         }
     }
 
-    private void saveStatsInternal(Connection conn, int hr, int rr, int act, int scratch) throws SQLException {
-         try (PreparedStatement ps = conn.prepareStatement(
-                "UPDATE pet_stats SET hr=?, rr=?, act=?, scratch=?, last_updated=? WHERE id=1")) {
-            ps.setInt(1, hr);
-            ps.setInt(2, rr);
-            ps.setInt(3, act);
-            ps.setInt(4, scratch);
-            ps.setDate(5, java.sql.Date.valueOf(LocalDate.now()));
-            ps.executeUpdate();
+    private record ExportTable(String name, String sql, String[] columns, ExportWriter.Type[] types) {}
+
+    // Each query takes (pet_id low, pet_id high, from, to). Dates come out as epoch days.
+    private static final List<ExportTable> exportTables = List.of(
+            new ExportTable("meals", "SELECT m.pet_id, m.date - DATE '1970-01-01', f.name, m.amount FROM meals m " +
+                    "LEFT JOIN foods f ON f.id = m.food_id " +
+                    "WHERE m.pet_id BETWEEN ? AND ? AND m.date >= ? AND m.date <= ? ORDER BY m.pet_id, m.date, m.id",
+                    new String[] {"pet_id", "date", "name", "amount"},
+                    new ExportWriter.Type[] {ExportWriter.Type.INT, ExportWriter.Type.DATE, ExportWriter.Type.TEXT, ExportWriter.Type.DOUBLE}),
+            new ExportTable("weights", "SELECT pet_id, date - DATE '1970-01-01', weight FROM weights " +
+                    "WHERE pet_id BETWEEN ? AND ? AND date >= ? AND date <= ? ORDER BY pet_id, date, id",
+                    new String[] {"pet_id", "date", "weight"},
+                    new ExportWriter.Type[] {ExportWriter.Type.INT, ExportWriter.Type.DATE, ExportWriter.Type.DOUBLE}),
+            new ExportTable("grooming", "SELECT g.pet_id, g.date - DATE '1970-01-01', a.description FROM grooming_logs g " +
+                    "LEFT JOIN grooming_actions a ON a.id = g.action_id " +
+                    "WHERE g.pet_id BETWEEN ? AND ? AND g.date >= ? AND g.date <= ? ORDER BY g.pet_id, g.date, g.id",
+                    new String[] {"pet_id", "date", "description"},
+                    new ExportWriter.Type[] {ExportWriter.Type.INT, ExportWriter.Type.DATE, ExportWriter.Type.TEXT}),
+            new ExportTable("activity", "SELECT pet_id, date - DATE '1970-01-01', minutes FROM daily_activity " +
+                    "WHERE pet_id BETWEEN ? AND ? AND date >= ? AND date <= ? ORDER BY pet_id, date",
+                    new String[] {"pet_id", "date", "minutes"},
+                    new ExportWriter.Type[] {ExportWriter.Type.INT, ExportWriter.Type.DATE, ExportWriter.Type.INT}),
+            // Vitals days are UTC, matching the partitions and the exported timestamps.
+            new ExportTable("vitals", "SELECT pet_id, (extract(epoch FROM ts) * 1000)::BIGINT, hr, rr FROM vitals " +
+                    "WHERE pet_id BETWEEN ? AND ? AND ts >= (?::date)::timestamp AT TIME ZONE 'UTC' " +
+                    "AND ts < (?::date + 1)::timestamp AT TIME ZONE 'UTC' ORDER BY pet_id, ts",
+                    new String[] {"pet_id", "ts", "hr", "rr"},
+                    new ExportWriter.Type[] {ExportWriter.Type.INT, ExportWriter.Type.TIMESTAMP, ExportWriter.Type.INT, ExportWriter.Type.INT}));
+
+    // Writes one file per table into dir. A null petId exports every pet. Rows are streamed through a
+    // server-side cursor, so neither side holds more than a fetch batch and a write buffer.
+    public long exportHistory(Path dir, ExportWriter.Format format, Integer petId, LocalDate from, LocalDate to) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        java.nio.file.Files.createDirectories(dir);
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            pc.conn().setAutoCommit(false); // the driver only uses a cursor inside a transaction
+            for (ExportTable t : exportTables) {
+                PreparedStatement ps = pc.prepare(t.sql());
+                ps.setFetchSize(exportFetchSize);
+                ps.setInt(1, petId == null ? Integer.MIN_VALUE : petId);
+                ps.setInt(2, petId == null ? Integer.MAX_VALUE : petId);
+                ps.setDate(3, java.sql.Date.valueOf(from));
+                ps.setDate(4, java.sql.Date.valueOf(to));
+                try (ResultSet rs = ps.executeQuery();
+                     ExportWriter w = ExportWriter.open(format, dir.resolve(t.name() + format.extension), t.columns(), t.types())) {
+                    while (rs.next()) {
+                        for (int c = 0; c < t.types().length; c++) {
+                            switch (t.types()[c]) {
+                                case DOUBLE -> w.putDouble(rs.getDouble(c + 1));
+                                case TEXT -> w.putText(rs.getString(c + 1));
+                                default -> w.putLong(rs.getLong(c + 1));
+                            }
+                        }
+                        w.endRow();
+                    }
+                    rows += w.rows();
+                }
+            }
+            pc.conn().commit();
+        } catch (SQLException | IOException e) {
+            exportTimer.error();
+            throw e;
         }
+        exportTimer.record(start);
+        return rows;
     }
 
-    private void saveActivity(Connection conn, LocalDate date, int minutes) throws SQLException {
-         try (PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO daily_activity (date, minutes) VALUES (?, ?) " +
-                "ON CONFLICT (date) DO UPDATE SET minutes=EXCLUDED.minutes")) {
-            ps.setDate(1, java.sql.Date.valueOf(date));
-            ps.setInt(2, minutes);
-            ps.executeUpdate();
+    private void logScratch(ConnectionPool.PooledConnection pc, int petId, int[] scratch, int count) throws SQLException {
+        PreparedStatement ps = pc.prepare("INSERT INTO scratch_log (pet_id, scratch) VALUES (?, ?)");
+        ps.setInt(1, petId);
+        for (int i = 0; i < count; i++) {
+            ps.setInt(2, scratch[i]);
+            ps.addBatch();
         }
+        ps.executeBatch();
     }
 
+    @Override
     public void saveSettings(PetProfile p) {
-        try (Connection conn = connect()) {
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "UPDATE pet_stats SET tgt_act=?, opt_wt=?, tgt_food=? WHERE id=1")) {
-                ps.setInt(1, p.getTgtAct());
-                ps.setDouble(2, p.getOptWt());
-                ps.setDouble(3, p.getTgtFood());
-                ps.executeUpdate();
-            }
-            updateRoutine(p.getTeeth());
-            updateRoutine(p.getEars());
-            updateRoutine(p.getGroom());
-            updateRoutine(p.getNexgard());
-            updateRoutine(p.getShower());
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        int petId = p.getId(), tgtAct = p.getTgtAct();
+        double optWt = p.getOptWt(), tgtFood = p.getTgtFood();
+        submit(settingsWrite, pc -> {
+            PreparedStatement ps = pc.prepare("UPDATE pet_stats SET tgt_act=?, opt_wt=?, tgt_food=? WHERE id=?");
+            ps.setInt(1, tgtAct);
+            ps.setDouble(2, optWt);
+            ps.setDouble(3, tgtFood);
+            ps.setInt(4, petId);
+            ps.executeUpdate();
+
+            // Goal hits depend on the target, so re-score every bucket.
+            PreparedStatement range = pc.prepare("SELECT min(date), max(date) FROM daily_activity WHERE pet_id = ?");
+            range.setInt(1, petId);
+            try (ResultSet rs = range.executeQuery()) {
+                if (rs.next() && rs.getDate(1) != null) refreshRollups(pc, petId, rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate());
+            }
+        });
+        for (Routine r : p.getRoutines()) updateRoutine(petId, r);
     }
 
-    public void addMeal(LocalDate date, String name, double amount) {
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO meals (date, name, amount) VALUES (?, ?, ?)")) {
-            ps.setDate(1, java.sql.Date.valueOf(date));
+    @Override
+    public void addMeal(int petId, LocalDate date, String name, double amount) {
+        submitHistory(mealWrite, petId, pc -> {
+            PreparedStatement ps = pc.prepare("INSERT INTO meals (pet_id, date, food_id, amount) VALUES (?, ?, ?, ?)");
+            ps.setInt(1, petId);
+            ps.setDate(2, java.sql.Date.valueOf(date));
+            ps.setObject(3, foods.id(pc, name, newFoods), Types.INTEGER);
+            ps.setDouble(4, amount);
+            ps.executeUpdate();
+        });
+    }
+
+    @Override
+    public void addWeight(int petId, LocalDate date, double weight) {
+        submitHistory(weightWrite, petId, pc -> {
+            PreparedStatement ps = pc.prepare("INSERT INTO weights (pet_id, date, weight) VALUES (?, ?, ?)");
+            ps.setInt(1, petId);
+            ps.setDate(2, java.sql.Date.valueOf(date));
+            ps.setDouble(3, weight);
+            ps.executeUpdate();
+        });
+    }
+
+    // Lists are copied, so callers may reuse them.
+    @Override
+    public void addMeals(int petId, List<HistoryRecord.Meal> meals) {
+        if (meals.isEmpty()) return;
+        List<HistoryRecord.Meal> copy = List.copyOf(meals);
+        submitHistory(mealWrite, petId, pc -> {
+            PreparedStatement ps = pc.prepare("INSERT INTO meals (pet_id, date, food_id, amount) VALUES (?, ?, ?, ?)");
+            ps.setInt(1, petId);
+            for (HistoryRecord.Meal m : copy) {
+                ps.setDate(2, java.sql.Date.valueOf(m.date()));
+                ps.setObject(3, foods.id(pc, m.name(), newFoods), Types.INTEGER);
+                ps.setDouble(4, m.amount());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        });
+    }
+
+    @Override
+    public void addWeights(int petId, List<HistoryRecord.Weight> weights) {
+        if (weights.isEmpty()) return;
+        List<HistoryRecord.Weight> copy = List.copyOf(weights);
+        submitHistory(weightWrite, petId, pc -> {
+            PreparedStatement ps = pc.prepare("INSERT INTO weights (pet_id, date, weight) VALUES (?, ?, ?)");
+            ps.setInt(1, petId);
+            for (HistoryRecord.Weight w : copy) {
+                ps.setDate(2, java.sql.Date.valueOf(w.date()));
+                ps.setDouble(3, w.weight());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        });
+    }
+
+    @Override
+    public void addGroomingLog(int petId, LocalDate date, String description) {
+        submitHistory(groomWrite, petId, pc -> {
+            PreparedStatement ps = pc.prepare("INSERT INTO grooming_logs (pet_id, date, action_id) VALUES (?, ?, ?)");
+            ps.setInt(1, petId);
+            ps.setDate(2, java.sql.Date.valueOf(date));
+            ps.setObject(3, groomingActions.id(pc, description, newActions), Types.INTEGER);
+            ps.executeUpdate();
+        });
+    }
+
+    @Override
+    public void updateRoutine(int petId, Routine r) {
+        String name = r.getName();
+        LocalDate last = r.getLast();
+        int freq = r.getFreq();
+        submit(routineWrite, pc -> {
+            PreparedStatement ps = pc.prepare("INSERT INTO routines (pet_id, name, last_done, interval_days) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT (pet_id, name) DO UPDATE SET last_done=EXCLUDED.last_done, interval_days=EXCLUDED.interval_days");
+            ps.setInt(1, petId);
             ps.setString(2, name);
-            ps.setDouble(3, amount);
+            ps.setDate(3, java.sql.Date.valueOf(last));
+            ps.setInt(4, freq);
             ps.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
-    public void addWeight(LocalDate date, double weight) {
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO weights (date, weight) VALUES (?, ?)")) {
-            ps.setDate(1, java.sql.Date.valueOf(date));
-            ps.setDouble(2, weight);
+    @Override
+    public void removeRoutine(int petId, String name) {
+        submit(routineWrite, pc -> {
+            PreparedStatement ps = pc.prepare("DELETE FROM routines WHERE pet_id = ? AND name = ?");
+            ps.setInt(1, petId);
+            ps.setString(2, name);
             ps.executeUpdate();
+        });
+    }
+
+    @Override
+    public Map<Integer, List<Routine>> loadRoutines() {
+        Map<Integer, List<Routine>> all = new HashMap<>();
+        try (ConnectionPool.PooledConnection pc = connect();
+             ResultSet rs = pc.prepare("SELECT pet_id, name, last_done, interval_days FROM routines").executeQuery()) {
+            while (rs.next()) {
+                Routine r = new Routine(rs.getString(2), rs.getInt(4));
+                r.setLast(rs.getDate(3).toLocalDate());
+                all.computeIfAbsent(rs.getInt(1), k -> new ArrayList<>()).add(r);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            System.err.println("Load failed: " + e.getMessage());
         }
+        return all;
     }
 
-    public void addGroomingLog(LocalDate date, String description) {
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO grooming_logs (date, description) VALUES (?, ?)")) {
-            ps.setDate(1, java.sql.Date.valueOf(date));
-            ps.setString(2, description);
-            ps.executeUpdate();
+    // Records are checked as they stream: an invalid one throws IllegalArgumentException, leaving the
+    // chunks before it committed and the rest unwritten.
+    public ImportResult bulkImport(int petId, Stream<? extends HistoryRecord> records, int chunkSize) throws SQLException {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        long start = System.nanoTime();
+        long rows = 0;
+        try (ConnectionPool.PooledConnection pc = connect()) {
+            Connection conn = pc.conn();
+            // Imported rows can land behind existing ids, so invalidate snapshots up front.
+            bumpVersion(pc, petId);
+            conn.setAutoCommit(false);
+            PreparedStatement meals = pc.prepare("INSERT INTO meals (pet_id, date, food_id, amount) VALUES (?, ?, ?, ?)");
+            PreparedStatement weights = pc.prepare("INSERT INTO weights (pet_id, date, weight) VALUES (?, ?, ?)");
+            PreparedStatement grooming = pc.prepare("INSERT INTO grooming_logs (pet_id, date, action_id) VALUES (?, ?, ?)");
+            PreparedStatement acts = pc.prepare("INSERT INTO daily_activity (pet_id, date, minutes) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (pet_id, date) DO UPDATE SET minutes=EXCLUDED.minutes");
+            PreparedStatement[] all = {meals, weights, grooming, acts};
+            for (PreparedStatement ps : all) {
+                ps.clearBatch(); // statements are cached per connection; drop rows a rejected import left batched
+                ps.setInt(1, petId);
+            }
+
+            // Dictionary misses are upserted in the chunk's own transaction and cached once it commits.
+            Map<String, Integer> importedFoods = new HashMap<>(), importedActions = new HashMap<>();
+            int inChunk = 0;
+            LocalDate actFrom = null, actTo = null;
+            Iterator<? extends HistoryRecord> it = records.iterator();
+            while (it.hasNext()) {
+                HistoryRecord r = it.next();
+                java.sql.Date d = java.sql.Date.valueOf(r.date());
+                if (r instanceof HistoryRecord.Meal m) {
+                    if (m.name() == null || m.name().trim().isEmpty()) throw new IllegalArgumentException("Meal name required");
+                    if (!(m.amount() > 0)) throw new IllegalArgumentException("Amount must be positive.");
+                    meals.setDate(2, d);
+                    meals.setObject(3, foods.id(pc, m.name(), importedFoods), Types.INTEGER);
+                    meals.setDouble(4, m.amount());
+                    meals.addBatch();
+                } else if (r instanceof HistoryRecord.Weight w) {
+                    weights.setDate(2, d);
+                    weights.setDouble(3, w.weight());
+                    weights.addBatch();
+                } else if (r instanceof HistoryRecord.Grooming g) {
+                    if (g.description() == null || g.description().trim().isEmpty()) throw new IllegalArgumentException("Grooming description required");
+                    grooming.setDate(2, d);
+                    grooming.setObject(3, groomingActions.id(pc, g.description(), importedActions), Types.INTEGER);
+                    grooming.addBatch();
+                } else if (r instanceof HistoryRecord.Activity a) {
+                    acts.setDate(2, d);
+                    acts.setInt(3, a.minutes());
+                    acts.addBatch();
+                    if (actFrom == null || a.date().isBefore(actFrom)) actFrom = a.date();
+                    if (actTo == null || a.date().isAfter(actTo)) actTo = a.date();
+                }
+                if (++inChunk == chunkSize) {
+                    commitChunk(conn, all);
+                    foods.committed(importedFoods);
+                    groomingActions.committed(importedActions);
+                    rows += inChunk;
+                    inChunk = 0;
+                }
+            }
+            if (inChunk > 0) {
+                commitChunk(conn, all);
+                foods.committed(importedFoods);
+                groomingActions.committed(importedActions);
+                rows += inChunk;
+            }
+            if (actFrom != null) {
+                refreshRollups(pc, petId, actFrom, actTo);
+                conn.commit();
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            importTimer.error();
+            throw e;
         }
+        importTimer.record(start);
+        return new ImportResult(rows, System.nanoTime() - start);
     }
 
-    public void updateRoutine(Routine r) {
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO routines (name, last_done, interval_days) VALUES (?, ?, ?) " +
-                        "ON CONFLICT (name) DO UPDATE SET last_done=EXCLUDED.last_done, interval_days=EXCLUDED.interval_days")) {
-            ps.setString(1, r.getName());
-            ps.setDate(2, java.sql.Date.valueOf(r.getLast()));
-            ps.setInt(3, r.getFreq());
-            ps.executeUpdate();
+    private void commitChunk(Connection conn, PreparedStatement[] batches) throws SQLException {
+        try {
+            for (PreparedStatement ps : batches) ps.executeBatch();
+            conn.commit();
         } catch (SQLException e) {
-            e.printStackTrace();
+            for (PreparedStatement ps : batches) ps.clearBatch();
+            conn.rollback();
+            throw e;
         }
     }
 }
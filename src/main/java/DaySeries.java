@@ -0,0 +1,161 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class DaySeries {
+
+    private int[] days;
+    private double[] values;
+    private int size;
+
+    public DaySeries() {
+        this(16);
+    }
+
+    public DaySeries(int capacity) {
+        days = new int[Math.max(capacity, 1)];
+        values = new double[days.length];
+    }
+
+    // Appends a sample; several samples may share a day.
+    public void add(LocalDate date, double value) {
+        int day = (int) date.toEpochDay();
+        insertAt(upperBound(day), day, value);
+    }
+
+    // Keeps a single sample per day, replacing any existing one.
+    public void put(LocalDate date, double value) {
+        int day = (int) date.toEpochDay();
+        int i = upperBound(day);
+        if (i > 0 && days[i - 1] == day) {
+            values[i - 1] = value;
+        } else {
+            insertAt(i, day, value);
+        }
+    }
+
+    private void insertAt(int i, int day, double value) {
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        if (i < size) {
+            System.arraycopy(days, i, days, i + 1, size - i);
+            System.arraycopy(values, i, values, i + 1, size - i);
+        }
+        days[i] = day;
+        values[i] = value;
+        size++;
+    }
+
+    // Drops every sample before the date and gives back spare capacity.
+    public void removeBefore(LocalDate date) {
+        int n = lowerBound((int) date.toEpochDay());
+        if (n == 0) return;
+        size -= n;
+        int cap = Math.max(16, Integer.highestOneBit(Math.max(size, 1)) * 2);
+        if (cap < days.length) {
+            days = Arrays.copyOfRange(days, n, n + cap);
+            values = Arrays.copyOfRange(values, n, n + cap);
+        } else {
+            System.arraycopy(days, n, days, 0, size);
+            System.arraycopy(values, n, values, 0, size);
+        }
+    }
+
+    private int lowerBound(int day) {
+        if (size == 0 || days[size - 1] < day) return size;
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int upperBound(int day) {
+        if (size == 0 || days[size - 1] <= day) return size;
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] <= day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public int size() { return size; }
+
+    public boolean contains(LocalDate date) {
+        int day = (int) date.toEpochDay();
+        int i = lowerBound(day);
+        return i < size && days[i] == day;
+    }
+
+    // Latest sample on the day, or NaN if there is none.
+    public double get(LocalDate date) {
+        int day = (int) date.toEpochDay();
+        int i = upperBound(day);
+        return i > 0 && days[i - 1] == day ? values[i - 1] : Double.NaN;
+    }
+
+    public View all() {
+        return new View(days, values, 0, size);
+    }
+
+    // Inclusive of both ends.
+    public View slice(LocalDate from, LocalDate to) {
+        int lo = lowerBound((int) from.toEpochDay());
+        int hi = upperBound((int) to.toEpochDay());
+        return new View(days, values, lo, Math.max(lo, hi));
+    }
+
+    // Read-only window over the backing arrays; only valid until the series is next modified.
+    public static class View {
+        private final int[] days;
+        private final double[] values;
+        private final int from;
+        private final int to;
+
+        private View(int[] days, double[] values, int from, int to) {
+            this.days = days;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        public int size() { return to - from; }
+
+        public boolean isEmpty() { return to == from; }
+
+        public int epochDay(int i) { return days[from + i]; }
+
+        public LocalDate date(int i) { return LocalDate.ofEpochDay(days[from + i]); }
+
+        public double value(int i) { return values[from + i]; }
+
+        public double sum() {
+            double s = 0;
+            for (int i = from; i < to; i++) s += values[i];
+            return s;
+        }
+
+        public double mean() {
+            return isEmpty() ? Double.NaN : sum() / size();
+        }
+
+        public double min() {
+            if (isEmpty()) return Double.NaN;
+            double m = values[from];
+            for (int i = from + 1; i < to; i++) m = Math.min(m, values[i]);
+            return m;
+        }
+
+        public double max() {
+            if (isEmpty()) return Double.NaN;
+            double m = values[from];
+            for (int i = from + 1; i < to; i++) m = Math.max(m, values[i]);
+            return m;
+        }
+    }
+}
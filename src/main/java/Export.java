@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Locale;
+
+// Command-line export of pet history, run without the dashboard:
+// java Export [--format csv|columnar] [--pet ID] [--from YYYY-MM-DD] [--to YYYY-MM-DD] DIR
+public class Export {
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        ExportWriter.Format format = ExportWriter.Format.CSV;
+        Integer petId = null;
+        LocalDate from = LocalDate.of(1970, 1, 1), to = LocalDate.now();
+        Path dir = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format" -> format = ExportWriter.Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    case "--pet" -> petId = Integer.parseInt(args[++i]);
+                    case "--from" -> from = LocalDate.parse(args[++i]);
+                    case "--to" -> to = LocalDate.parse(args[++i]);
+                    default -> dir = args[i].startsWith("--") ? null : Paths.get(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            dir = null;
+        }
+        if (dir == null) {
+            System.err.println("Usage: Export [--format csv|columnar] [--pet ID] [--from YYYY-MM-DD] [--to YYYY-MM-DD] DIR");
+            return 2;
+        }
+        try (DatabaseManager db = new DatabaseManager()) {
+            if (!db.isAvailable()) return 1;
+            long start = System.nanoTime();
+            long rows = db.exportHistory(dir, format, petId, from, to);
+            System.out.printf("Exported %d rows to %s in %d ms%n", rows, dir, (System.nanoTime() - start) / 1_000_000);
+            return 0;
+        } catch (SQLException | IOException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            return 1;
+        }
+    }
+}
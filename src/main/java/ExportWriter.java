@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+
+// Row-at-a-time table writer over a fixed-size NIO buffer. Values are put column by column
+// and endRow() closes the row, so memory stays the same however many rows are written.
+public abstract class ExportWriter implements AutoCloseable {
+
+    public enum Format {
+        CSV(".csv"), COLUMNAR(".dwgc");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    // DATE is an epoch day, TIMESTAMP epoch milliseconds.
+    public enum Type { INT, LONG, DOUBLE, DATE, TIMESTAMP, TEXT }
+
+    static final int MAGIC = 0x44574743; // "DWGC"
+    static final short FORMAT = 1;
+    static final int BLOCK = 4096;
+
+    protected final FileChannel ch;
+    protected final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+    protected final Type[] types;
+    protected int col;
+    private long rows;
+
+    protected ExportWriter(Path file, String[] names, Type[] types) throws IOException {
+        if (names.length != types.length) throw new IllegalArgumentException("Column names and types differ in length");
+        this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.types = types;
+    }
+
+    public static ExportWriter open(Format format, Path file, String[] names, Type[] types) throws IOException {
+        return format == Format.CSV ? new Csv(file, names, types) : new Columnar(file, names, types);
+    }
+
+    public abstract void putLong(long v) throws IOException;
+
+    public abstract void putDouble(double v) throws IOException;
+
+    public abstract void putText(String v) throws IOException;
+
+    public void putInt(int v) throws IOException {
+        putLong(v);
+    }
+
+    public void endRow() throws IOException {
+        if (col != types.length) throw new IllegalStateException("Row has " + col + " of " + types.length + " columns");
+        col = 0;
+        rows++;
+    }
+
+    public long rows() { return rows; }
+
+    protected void ensure(int n) throws IOException {
+        if (buf.remaining() < n) drain();
+    }
+
+    protected void putBytes(byte[] b) throws IOException {
+        if (b.length > buf.capacity()) {
+            drain();
+            ByteBuffer w = ByteBuffer.wrap(b);
+            while (w.hasRemaining()) ch.write(w);
+        } else {
+            ensure(b.length);
+            buf.put(b);
+        }
+    }
+
+    protected void drain() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+            drain();
+        } finally {
+            ch.close();
+        }
+    }
+
+    protected void finish() throws IOException {}
+
+    // RFC 4180: header line, text quoted only when it holds a comma, quote or line break.
+    static final class Csv extends ExportWriter {
+
+        Csv(Path file, String[] names, Type[] types) throws IOException {
+            super(file, names, types);
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) buf.put((byte) ',');
+                putBytes(names[i].getBytes(StandardCharsets.UTF_8));
+            }
+            buf.put((byte) '\n');
+        }
+
+        private void separate() throws IOException {
+            ensure(32);
+            if (col > 0) buf.put((byte) ',');
+        }
+
+        @Override
+        public void putLong(long v) throws IOException {
+            separate();
+            switch (types[col++]) {
+                case DATE -> putAscii(LocalDate.ofEpochDay(v).toString());
+                case TIMESTAMP -> putAscii(Instant.ofEpochMilli(v).toString());
+                default -> putDigits(v);
+            }
+        }
+
+        @Override
+        public void putDouble(double v) throws IOException {
+            separate();
+            col++;
+            if (v == Math.rint(v) && Math.abs(v) < 1e15) putDigits((long) v);
+            else putAscii(Double.toString(v));
+        }
+
+        @Override
+        public void putText(String v) throws IOException {
+            separate();
+            col++;
+            if (v == null) return;
+            boolean quote = false;
+            for (int i = 0; i < v.length() && !quote; i++) {
+                char c = v.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (quote) v = '"' + v.replace("\"", "\"\"") + '"';
+            putBytes(v.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void endRow() throws IOException {
+            super.endRow();
+            ensure(1);
+            buf.put((byte) '\n');
+        }
+
+        private void putAscii(String s) throws IOException {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) buf.put((byte) s.charAt(i));
+        }
+
+        // Caller has ensured room for 20 digits and a sign.
+        private void putDigits(long v) {
+            if (v == Long.MIN_VALUE) {
+                for (byte b : "-9223372036854775808".getBytes(StandardCharsets.US_ASCII)) buf.put(b);
+                return;
+            }
+            if (v < 0) {
+                buf.put((byte) '-');
+                v = -v;
+            }
+            int start = buf.position();
+            do {
+                buf.put((byte) ('0' + v % 10));
+                v /= 10;
+            } while (v > 0);
+            for (int i = start, j = buf.position() - 1; i < j; i++, j--) {
+                byte t = buf.get(i);
+                buf.put(i, buf.get(j));
+                buf.put(j, t);
+            }
+        }
+    }
+
+    // Header: MAGIC, FORMAT, column count, then per column a type ordinal and a name.
+    // Rows follow in blocks of up to BLOCK: [int rows] then each column's values back to back.
+    // INT and DATE are 4 bytes, LONG, TIMESTAMP and DOUBLE 8, TEXT [int len][utf-8] with -1 for null.
+    // A block of zero rows ends the file.
+    static final class Columnar extends ExportWriter {
+
+        private final long[][] longs;
+        private final double[][] doubles;
+        private final String[][] texts;
+        private int n;
+
+        Columnar(Path file, String[] names, Type[] types) throws IOException {
+            super(file, names, types);
+            longs = new long[types.length][];
+            doubles = new double[types.length][];
+            texts = new String[types.length][];
+            buf.putInt(MAGIC).putShort(FORMAT).putShort((short) types.length);
+            for (int i = 0; i < types.length; i++) {
+                switch (types[i]) {
+                    case DOUBLE -> doubles[i] = new double[BLOCK];
+                    case TEXT -> texts[i] = new String[BLOCK];
+                    default -> longs[i] = new long[BLOCK];
+                }
+                byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+                ensure(3 + name.length);
+                buf.put((byte) types[i].ordinal()).putShort((short) name.length).put(name);
+            }
+        }
+
+        @Override
+        public void putLong(long v) {
+            longs[col++][n] = v;
+        }
+
+        @Override
+        public void putDouble(double v) {
+            doubles[col++][n] = v;
+        }
+
+        @Override
+        public void putText(String v) {
+            texts[col++][n] = v;
+        }
+
+        @Override
+        public void endRow() throws IOException {
+            super.endRow();
+            if (++n == BLOCK) writeBlock();
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            if (n > 0) writeBlock();
+            ensure(4);
+            buf.putInt(0);
+        }
+
+        private void writeBlock() throws IOException {
+            ensure(4);
+            buf.putInt(n);
+            for (int c = 0; c < types.length; c++) {
+                switch (types[c]) {
+                    case INT, DATE -> {
+                        for (int i = 0; i < n; i++) {
+                            ensure(4);
+                            buf.putInt((int) longs[c][i]);
+                        }
+                    }
+                    case LONG, TIMESTAMP -> {
+                        for (int i = 0; i < n; i++) {
+                            ensure(8);
+                            buf.putLong(longs[c][i]);
+                        }
+                    }
+                    case DOUBLE -> {
+                        for (int i = 0; i < n; i++) {
+                            ensure(8);
+                            buf.putDouble(doubles[c][i]);
+                        }
+                    }
+                    case TEXT -> {
+                        for (int i = 0; i < n; i++) {
+                            String s = texts[c][i];
+                            texts[c][i] = null;
+                            ensure(4);
+                            if (s == null) {
+                                buf.putInt(-1);
+                                continue;
+                            }
+                            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                            buf.putInt(b.length);
+                            putBytes(b);
+                        }
+                    }
+                }
+            }
+            n = 0;
+        }
+    }
+}
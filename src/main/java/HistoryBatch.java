@@ -0,0 +1,66 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// History fetched off the UI thread. Loaders may fill the parts from different threads;
+// applyTo is called once they have all finished, on the thread that owns the profile.
+public class HistoryBatch {
+
+    final LocalDate from;
+    List<HistoryRecord.Meal> meals = new ArrayList<>();
+    List<HistoryRecord.Weight> weights = new ArrayList<>();
+    List<HistoryRecord.Grooming> grooming = new ArrayList<>();
+    List<HistoryRecord.Activity> activity = new ArrayList<>();
+
+    // Only set for the initial load; null leaves the monitor and vitals buffer alone.
+    int[] scratch;
+    long[] vitalsMs;
+    int[] vitalsHr;
+    int[] vitalsRr;
+    int vitalsCount;
+
+    public HistoryBatch(LocalDate from) {
+        this.from = from;
+    }
+
+    // A copy of the profile's resident history, taken on the thread that owns it.
+    public static HistoryBatch of(PetProfile p) {
+        HistoryBatch b = new HistoryBatch(p.getHistoryFrom());
+        b.meals = p.getMealRecords();
+        b.weights = p.getWeightRecords();
+        b.grooming = p.getGroomingRecords();
+        b.activity = p.getActivityRecords();
+        return b;
+    }
+
+    public int size() {
+        return meals.size() + weights.size() + grooming.size() + activity.size();
+    }
+
+    // The listener hears about the batch once rather than per record.
+    public void applyTo(PetProfile p) {
+        PetProfile.HistoryListener l = p.getHistoryListener();
+        p.setHistoryListener(null);
+        try {
+            addTo(p);
+        } finally {
+            p.setHistoryListener(l);
+        }
+        if (l != null) l.loaded(this);
+    }
+
+    private void addTo(PetProfile p) {
+        for (HistoryRecord.Meal m : meals) p.addMeal(m.date(), m.name(), m.amount());
+        for (HistoryRecord.Weight w : weights) p.addWeight(w.date(), w.weight());
+        for (HistoryRecord.Grooming g : grooming) p.logGrooming(g.date(), g.description());
+        for (HistoryRecord.Activity a : activity) p.addDailyActivity(a.date(), a.minutes());
+
+        if (scratch != null) {
+            ScratchMonitor m = p.getScratchMonitor();
+            m.reset();
+            for (int s : scratch) m.update(s);
+        }
+        if (vitalsMs != null) p.getVitals().addAll(vitalsMs, vitalsHr, vitalsRr, vitalsCount);
+        p.setHistoryFrom(from);
+    }
+}
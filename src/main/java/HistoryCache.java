@@ -0,0 +1,160 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// Heap budget for resident history across pets, accounted per pet and day. Buckets are kept in
+// least-recently-used order; trimming evicts the coldest day of a pet together with everything
+// older, so a profile always holds one contiguous range and covers() stays exact. The last
+// hotDays days are never evicted. Range queries answer evicted days from storage without
+// reloading them (see DatabaseManager); ensure() brings them back, as "Load Older" does.
+public class HistoryCache {
+
+    private record Bucket(PetProfile pet, long day) {}
+
+    private static final class Slot {
+        long bytes;
+    }
+
+    private final long budget;
+    private final int hotDays;
+    private final Clock clock;
+    // Insertion order is use order: touching a bucket moves it to the tail.
+    private final LinkedHashMap<Bucket, Slot> lru = new LinkedHashMap<>();
+    private final Map<PetProfile, TreeMap<Long, Slot>> byPet = new IdentityHashMap<>();
+    private long bytes;
+
+    public HistoryCache(long budgetBytes, int hotDays) {
+        this(budgetBytes, hotDays, Clock.systemDefaultZone());
+    }
+
+    public HistoryCache(long budgetBytes, int hotDays, Clock clock) {
+        this.budget = budgetBytes;
+        this.hotDays = hotDays;
+        this.clock = clock;
+    }
+
+    // HISTORY_BUDGET_MB (default 64) and HISTORY_HOT_DAYS (default 30).
+    public static HistoryCache fromEnv() {
+        Map<String, String> env = System.getenv();
+        long mb = Long.parseLong(env.getOrDefault("HISTORY_BUDGET_MB", "64"));
+        return new HistoryCache(mb << 20, Integer.parseInt(env.getOrDefault("HISTORY_HOT_DAYS", "30")));
+    }
+
+    public synchronized long bytes() { return bytes; }
+
+    public synchronized int buckets() { return lru.size(); }
+
+    public long budget() { return budget; }
+
+    // Re-accounts the profile's resident history. Days seen for the first time count as just used,
+    // older days first so a freshly loaded range is evicted from its old end.
+    public synchronized void track(PetProfile p) {
+        TreeMap<Long, Slot> days = byPet.computeIfAbsent(p, k -> new TreeMap<>());
+        TreeMap<Long, Long> now = new TreeMap<>(p.historyBytesByDay());
+        for (Iterator<Map.Entry<Long, Slot>> it = days.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Slot> e = it.next();
+            if (!now.containsKey(e.getKey())) {
+                bytes -= e.getValue().bytes;
+                lru.remove(new Bucket(p, e.getKey()));
+                it.remove();
+            }
+        }
+        for (Map.Entry<Long, Long> e : now.entrySet()) {
+            Slot s = days.get(e.getKey());
+            if (s == null) {
+                s = new Slot();
+                days.put(e.getKey(), s);
+                lru.put(new Bucket(p, e.getKey()), s);
+            }
+            bytes += e.getValue() - s.bytes;
+            s.bytes = e.getValue();
+        }
+    }
+
+    // Marks every resident day of the pet as used, e.g. when it is selected.
+    public synchronized void touch(PetProfile p) {
+        TreeMap<Long, Slot> days = byPet.get(p);
+        if (days != null) touch(p, days);
+    }
+
+    public synchronized void touch(PetProfile p, LocalDate from, LocalDate to) {
+        TreeMap<Long, Slot> days = byPet.get(p);
+        if (days != null) touch(p, days.subMap(from.toEpochDay(), true, to.toEpochDay(), true));
+    }
+
+    private void touch(PetProfile p, Map<Long, Slot> days) {
+        for (Map.Entry<Long, Slot> e : days.entrySet()) {
+            Bucket b = new Bucket(p, e.getKey());
+            lru.remove(b);
+            lru.put(b, e.getValue());
+        }
+    }
+
+    public synchronized void forget(PetProfile p) {
+        TreeMap<Long, Slot> days = byPet.remove(p);
+        if (days == null) return;
+        for (Map.Entry<Long, Slot> e : days.entrySet()) {
+            bytes -= e.getValue().bytes;
+            lru.remove(new Bucket(p, e.getKey()));
+        }
+    }
+
+    // Drops pets no longer resident, then evicts cold days until the budget holds.
+    // Call on the thread that owns the profiles. Returns the number of days evicted.
+    public synchronized int trim(Collection<PetProfile> resident) {
+        Set<PetProfile> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        live.addAll(resident);
+        for (PetProfile p : byPet.keySet().toArray(new PetProfile[0])) {
+            if (!live.contains(p)) forget(p);
+        }
+
+        long hot = LocalDate.now(clock).toEpochDay() - hotDays;
+        int evicted = 0;
+        // One pass over a copy, since each eviction also removes the pet's older buckets.
+        for (Bucket b : lru.keySet().toArray(new Bucket[0])) {
+            if (bytes <= budget) break;
+            if (b.day() <= hot && lru.containsKey(b)) evicted += evict(b.pet(), b.day());
+        }
+        return evicted;
+    }
+
+    private int evict(PetProfile p, long day) {
+        TreeMap<Long, Slot> days = byPet.get(p);
+        Map<Long, Slot> old = days.headMap(day, true);
+        int n = old.size();
+        for (Map.Entry<Long, Slot> e : old.entrySet()) {
+            bytes -= e.getValue().bytes;
+            lru.remove(new Bucket(p, e.getKey()));
+        }
+        old.clear();
+        p.evictBefore(LocalDate.ofEpochDay(day + 1));
+        return n;
+    }
+
+    // Makes the profile resident from the date on, reloading the missing days from storage. The
+    // reload is applied and accounted on owner, which runs tasks on the thread that owns the profile;
+    // it is dropped if the profile's range moved meanwhile.
+    public CompletableFuture<Void> ensure(Storage db, PetProfile p, LocalDate from, Executor owner) {
+        LocalDate loaded = p.getHistoryFrom();
+        if (loaded == null) return CompletableFuture.completedFuture(null);
+        if (p.covers(from)) {
+            touch(p, from, LocalDate.now(clock));
+            return CompletableFuture.completedFuture(null);
+        }
+        return db.loadHistory(p.getId(), from, loaded).thenAcceptAsync(b -> {
+            if (!loaded.equals(p.getHistoryFrom())) return;
+            b.applyTo(p);
+            track(p);
+            touch(p, from, LocalDate.now(clock));
+        }, owner);
+    }
+}
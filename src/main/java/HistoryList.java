@@ -0,0 +1,100 @@
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+// Date-ordered backing list for a ListView. Changes land as single inserts or replacements,
+// and cells format their record only when shown, so a refresh costs the size of the change.
+public class HistoryList<T extends HistoryRecord> {
+
+    private final ObservableList<T> items = FXCollections.observableArrayList();
+    private final Comparator<T> order;
+    private final boolean onePerDay;
+
+    public HistoryList(boolean newestFirst, boolean onePerDay) {
+        Comparator<T> byDate = Comparator.comparing(HistoryRecord::date);
+        this.order = newestFirst ? byDate.reversed() : byDate;
+        this.onePerDay = onePerDay;
+    }
+
+    public ObservableList<T> items() { return items; }
+
+    public void bind(ListView<T> view, Function<? super T, String> format) {
+        view.setItems(items);
+        view.setCellFactory(v -> new ListCell<>() {
+            @Override
+            protected void updateItem(T item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : format.apply(item));
+            }
+        });
+    }
+
+    // Equal dates keep arrival order; with onePerDay the newer record replaces the old one.
+    public void add(T r) {
+        int i = upperBound(r);
+        if (onePerDay && i > 0 && items.get(i - 1).date().equals(r.date())) {
+            items.set(i - 1, r);
+        } else {
+            items.add(i, r);
+        }
+    }
+
+    public void addAll(List<? extends T> batch) {
+        if (batch.isEmpty()) return;
+        List<T> sorted = new ArrayList<>(batch);
+        sorted.sort(order);
+        if (items.isEmpty() || order.compare(items.get(items.size() - 1), sorted.get(0)) < 0) {
+            items.addAll(sorted);
+        } else if (order.compare(sorted.get(sorted.size() - 1), items.get(0)) < 0) {
+            items.addAll(0, sorted);
+        } else {
+            items.setAll(merge(sorted));
+        }
+    }
+
+    public void removeBefore(LocalDate date) {
+        items.removeIf(r -> r.date().isBefore(date));
+    }
+
+    public void reset(List<? extends T> all) {
+        List<T> sorted = new ArrayList<>(all);
+        sorted.sort(order);
+        items.setAll(sorted);
+    }
+
+    private List<T> merge(List<T> sorted) {
+        List<T> out = new ArrayList<>(items.size() + sorted.size());
+        int i = 0, j = 0;
+        while (i < items.size() || j < sorted.size()) {
+            if (j == sorted.size()) {
+                out.add(items.get(i++));
+            } else if (i == items.size()) {
+                out.add(sorted.get(j++));
+            } else {
+                int c = order.compare(items.get(i), sorted.get(j));
+                if (c < 0 || (c == 0 && !onePerDay)) out.add(items.get(i++));
+                else if (c > 0) out.add(sorted.get(j++));
+                else i++;
+            }
+        }
+        return out;
+    }
+
+    private int upperBound(T r) {
+        int lo = 0, hi = items.size();
+        if (hi == 0 || order.compare(items.get(hi - 1), r) <= 0) return hi;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (order.compare(items.get(mid), r) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
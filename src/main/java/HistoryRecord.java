@@ -0,0 +1,26 @@
+import java.time.LocalDate;
+
+public sealed interface HistoryRecord {
+    LocalDate date();
+
+    // Meal and grooming text is held as a NameDictionary code, so repeats share one string.
+    record Meal(LocalDate date, int food, double amount) implements HistoryRecord {
+        public Meal(LocalDate date, String name, double amount) {
+            this(date, NameDictionary.FOODS.encode(name), amount);
+        }
+
+        public String name() { return NameDictionary.FOODS.name(food); }
+    }
+
+    record Weight(LocalDate date, double weight) implements HistoryRecord {}
+
+    record Grooming(LocalDate date, int action) implements HistoryRecord {
+        public Grooming(LocalDate date, String description) {
+            this(date, NameDictionary.GROOMING.encode(description));
+        }
+
+        public String description() { return NameDictionary.GROOMING.name(action); }
+    }
+
+    record Activity(LocalDate date, int minutes) implements HistoryRecord {}
+}
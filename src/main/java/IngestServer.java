@@ -0,0 +1,306 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless ingestion for collar devices. Each post is validated as a whole and handed to the
+// storage write-behind queue as one batch, so a request thread never waits on the database
+// unless the queue is full.
+//   POST /pets/{id}/vitals   JSON [{"ts":ms,"hr":n,"rr":n}, ...] or application/octet-stream
+//                            of big-endian [long ms][int hr][int rr] records
+//   POST /pets/{id}/meals    JSON [{"date":"YYYY-MM-DD","name":"...","amount":x}, ...]
+//   POST /pets/{id}/weights  JSON [{"date":"YYYY-MM-DD","weight":x}, ...]
+//   GET  /metrics            Prometheus text
+// A single object is accepted in place of a one-element array; a missing ts or date means now.
+public class IngestServer implements AutoCloseable {
+
+    static final int MAX_BODY = 4 << 20;
+    static final int VITAL_BYTES = 16;
+    static final long PET_REFRESH_MS = 1000;
+
+    private static final Metrics.Timer vitalsTimer = Metrics.timer("http_vitals");
+    private static final Metrics.Timer mealsTimer = Metrics.timer("http_meals");
+    private static final Metrics.Timer weightsTimer = Metrics.timer("http_weights");
+
+    public record Vitals(long[] millis, int[] hr, int[] rr, int count) {}
+
+    private final Storage db;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Set<Integer> pets = ConcurrentHashMap.newKeySet();
+    private final AtomicLong petsRead = new AtomicLong(System.nanoTime());
+
+    public IngestServer(Storage db, InetSocketAddress addr, int threads) throws IOException {
+        this.db = db;
+        this.server = HttpServer.create(addr, 1024);
+        AtomicInteger n = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ingest-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(workers);
+        server.createContext("/", this::handle);
+        pets.addAll(db.listPets().keySet());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() { return server.getAddress().getPort(); }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --headless [--port N]; INGEST_THREADS sizes the request pool.
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--port")) port = Integer.parseInt(args[i + 1]);
+        }
+        int threads = Integer.parseInt(System.getenv().getOrDefault("INGEST_THREADS",
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 4)));
+        Storage db = Storage.open();
+        IngestServer s = new IngestServer(db, new InetSocketAddress(port), threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            s.close();
+            db.flush();
+            db.close();
+        }, "ingest-shutdown"));
+        s.start();
+        System.out.println("Ingesting on port " + s.port());
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            if (parts.length == 2 && parts[1].equals("metrics")) {
+                if (!ex.getRequestMethod().equals("GET")) {
+                    send(ex, 405, "Use GET");
+                    return;
+                }
+                ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                send(ex, 200, Metrics.prometheus());
+                return;
+            }
+            if (parts.length != 4 || !parts[1].equals("pets")) {
+                send(ex, 404, "Not found");
+                return;
+            }
+            Metrics.Timer timer = switch (parts[3]) {
+                case "vitals" -> vitalsTimer;
+                case "meals" -> mealsTimer;
+                case "weights" -> weightsTimer;
+                default -> null;
+            };
+            if (timer == null) {
+                send(ex, 404, "Not found");
+                return;
+            }
+            if (!ex.getRequestMethod().equals("POST")) {
+                send(ex, 405, "Use POST");
+                return;
+            }
+            ingest(ex, parts[2], parts[3], timer);
+        }
+    }
+
+    private void ingest(HttpExchange ex, String pet, String kind, Metrics.Timer timer) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int petId;
+            try {
+                petId = Integer.parseInt(pet);
+            } catch (NumberFormatException e) {
+                petId = -1;
+            }
+            if (!knownPet(petId)) {
+                timer.error();
+                send(ex, 404, "Unknown pet " + pet);
+                return;
+            }
+            byte[] body = readBody(ex.getRequestBody());
+            if (body == null) {
+                timer.error();
+                send(ex, 413, "Body over " + MAX_BODY + " bytes");
+                return;
+            }
+            int accepted;
+            LocalDate today = LocalDate.now();
+            switch (kind) {
+                case "vitals" -> {
+                    String type = ex.getRequestHeaders().getFirst("Content-Type");
+                    Vitals v = type != null && type.startsWith("application/octet-stream")
+                            ? decodeVitals(body) : parseVitals(text(body), System.currentTimeMillis());
+                    db.addVitals(petId, v.millis(), v.hr(), v.rr(), v.count());
+                    accepted = v.count();
+                }
+                case "meals" -> {
+                    List<HistoryRecord.Meal> meals = parseMeals(text(body), today);
+                    db.addMeals(petId, meals);
+                    accepted = meals.size();
+                }
+                default -> {
+                    List<HistoryRecord.Weight> weights = parseWeights(text(body), today);
+                    db.addWeights(petId, weights);
+                    accepted = weights.size();
+                }
+            }
+            send(ex, 202, "{\"accepted\":" + accepted + "}");
+            timer.record(start);
+        } catch (IllegalArgumentException e) {
+            timer.error();
+            send(ex, 400, e.getMessage());
+        }
+    }
+
+    // Unknown ids re-read the pet list (for pets created since startup) at most once per
+    // PET_REFRESH_MS, so a device posting a bad id does not cost a query per request.
+    private boolean knownPet(int petId) {
+        if (petId <= 0) return false;
+        if (pets.contains(petId)) return true;
+        long now = System.nanoTime(), last = petsRead.get();
+        if (now - last >= TimeUnit.MILLISECONDS.toNanos(PET_REFRESH_MS) && petsRead.compareAndSet(last, now)) {
+            pets.addAll(db.listPets().keySet());
+        }
+        return pets.contains(petId);
+    }
+
+    // Null when the body is over MAX_BODY.
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        return body.length > MAX_BODY ? null : body;
+    }
+
+    private static String text(byte[] body) {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(status, b.length == 0 ? -1 : b.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(b);
+        }
+    }
+
+    static Vitals decodeVitals(byte[] body) {
+        if (body.length % VITAL_BYTES != 0) throw new IllegalArgumentException("Vitals body must be a multiple of " + VITAL_BYTES + " bytes");
+        int n = body.length / VITAL_BYTES;
+        long[] ms = new long[n];
+        int[] hr = new int[n], rr = new int[n];
+        ByteBuffer b = ByteBuffer.wrap(body);
+        for (int i = 0; i < n; i++) {
+            ms[i] = b.getLong();
+            hr[i] = b.getInt();
+            rr[i] = b.getInt();
+            if (hr[i] < 0 || rr[i] < 0) throw new IllegalArgumentException("Values cannot be negative.");
+            checkTimestamp(ms[i]);
+        }
+        return new Vitals(ms, hr, rr, n);
+    }
+
+    static Vitals parseVitals(String json, long now) {
+        List<Map<String, Object>> items = items(json);
+        int n = items.size();
+        long[] ms = new long[n];
+        int[] hr = new int[n], rr = new int[n];
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> m = items.get(i);
+            ms[i] = m.get("ts") == null ? now : (long) whole(m, "ts");
+            hr[i] = rate(m, "hr");
+            rr[i] = rate(m, "rr");
+            checkTimestamp(ms[i]);
+        }
+        return new Vitals(ms, hr, rr, n);
+    }
+
+    private static void checkTimestamp(long ms) {
+        if (ms < 0 || ms >= DatabaseManager.vitalsEndMs) throw new IllegalArgumentException("Timestamps must be epoch milliseconds between 1970 and 9999.");
+    }
+
+    static List<HistoryRecord.Meal> parseMeals(String json, LocalDate today) {
+        List<HistoryRecord.Meal> meals = new ArrayList<>();
+        for (Map<String, Object> m : items(json)) {
+            if (!(m.get("name") instanceof String name) || name.trim().isEmpty()) throw new IllegalArgumentException("Meal name required");
+            double amount = number(m, "amount");
+            if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
+            meals.add(new HistoryRecord.Meal(date(m, today), name, amount));
+        }
+        return meals;
+    }
+
+    static List<HistoryRecord.Weight> parseWeights(String json, LocalDate today) {
+        List<HistoryRecord.Weight> weights = new ArrayList<>();
+        for (Map<String, Object> m : items(json)) {
+            double weight = number(m, "weight");
+            if (weight <= 0) throw new IllegalArgumentException("Weight must be positive.");
+            weights.add(new HistoryRecord.Weight(date(m, today), weight));
+        }
+        return weights;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> items(String json) {
+        Object v = Json.parse(json);
+        List<Object> list = v instanceof List<?> l ? (List<Object>) l : List.of(v);
+        for (Object o : list) {
+            if (!(o instanceof Map)) throw new IllegalArgumentException("Expected an object or an array of objects");
+        }
+        return (List<Map<String, Object>>) (List<?>) list;
+    }
+
+    private static double number(Map<String, Object> m, String key) {
+        if (!(m.get(key) instanceof Double d) || !Double.isFinite(d)) throw new IllegalArgumentException("Enter a valid number for " + key + ".");
+        return d;
+    }
+
+    private static double whole(Map<String, Object> m, String key) {
+        double d = number(m, key);
+        if (d != Math.rint(d) || Math.abs(d) > 1e15) throw new IllegalArgumentException("Please enter valid whole numbers.");
+        return d;
+    }
+
+    private static int rate(Map<String, Object> m, String key) {
+        double d = whole(m, key);
+        if (d < 0) throw new IllegalArgumentException("Values cannot be negative.");
+        if (d > Integer.MAX_VALUE) throw new IllegalArgumentException("Value out of range for " + key + ".");
+        return (int) d;
+    }
+
+    private static LocalDate date(Map<String, Object> m, LocalDate today) {
+        Object d = m.get("date");
+        if (d == null) return today;
+        try {
+            return LocalDate.parse((String) d);
+        } catch (DateTimeParseException | ClassCastException e) {
+            throw new IllegalArgumentException("Dates must be YYYY-MM-DD.");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for device posts: objects become maps, arrays lists, numbers doubles.
+public final class Json {
+
+    private final String s;
+    private int i;
+
+    private Json(String s) {
+        this.s = s;
+    }
+
+    public static Object parse(String text) {
+        Json p = new Json(text);
+        Object v = p.value();
+        p.skipSpace();
+        if (p.i != p.s.length()) throw p.error("Trailing characters");
+        return v;
+    }
+
+    private Object value() {
+        skipSpace();
+        if (i >= s.length()) throw error("Unexpected end");
+        char c = s.charAt(i);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return number();
+                throw error("Unexpected '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        i++;
+        skipSpace();
+        if (peek('}')) return m;
+        do {
+            skipSpace();
+            if (i >= s.length() || s.charAt(i) != '"') throw error("Expected a key");
+            String key = string();
+            skipSpace();
+            expect(':');
+            m.put(key, value());
+            skipSpace();
+        } while (peek(','));
+        expect('}');
+        return m;
+    }
+
+    private List<Object> array() {
+        List<Object> l = new ArrayList<>();
+        i++;
+        skipSpace();
+        if (peek(']')) return l;
+        do {
+            l.add(value());
+            skipSpace();
+        } while (peek(','));
+        expect(']');
+        return l;
+    }
+
+    private String string() {
+        i++;
+        StringBuilder sb = null;
+        int start = i;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                String out = sb == null ? s.substring(start, i) : sb.append(s, start, i).toString();
+                i++;
+                return out;
+            }
+            if (c == '\\') {
+                if (sb == null) sb = new StringBuilder();
+                sb.append(s, start, i);
+                if (++i >= s.length()) break;
+                char e = s.charAt(i++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (i + 4 > s.length()) throw error("Bad escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("Bad escape");
+                        }
+                        i += 4;
+                    }
+                    default -> sb.append(e);
+                }
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double number() {
+        int start = i;
+        while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0) i++;
+        try {
+            return Double.valueOf(s.substring(start, i));
+        } catch (NumberFormatException e) {
+            throw error("Bad number");
+        }
+    }
+
+    private Object literal(String word, Object v) {
+        if (!s.startsWith(word, i)) throw error("Unexpected token");
+        i += word.length();
+        return v;
+    }
+
+    private boolean peek(char c) {
+        if (i < s.length() && s.charAt(i) == c) {
+            i++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) throw error("Expected '" + c + "'");
+    }
+
+    private void skipSpace() {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException(msg + " at offset " + i);
+    }
+}
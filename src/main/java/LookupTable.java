@@ -0,0 +1,112 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Client-side mirror of a Postgres dictionary table (id, text) whose ids the fact rows store.
+// Writes resolve text to ids and reads resolve ids to NameDictionary codes; only entries not
+// seen before go to the table.
+final class LookupTable {
+
+    interface Connector {
+        ConnectionPool.PooledConnection connect() throws SQLException;
+    }
+
+    private final String upsert;
+    private final String since;
+    private final String byId;
+    private final NameDictionary dict;
+    private final Connector connector;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> codes = new ConcurrentHashMap<>();
+    private int loadedTo; // guarded by this
+
+    LookupTable(String table, String column, NameDictionary dict, Connector connector) {
+        this.upsert = "INSERT INTO " + table + " (" + column + ") VALUES (?) ON CONFLICT (" + column + ") " +
+                "DO UPDATE SET " + column + " = EXCLUDED." + column + " RETURNING id";
+        this.since = "SELECT id, " + column + " FROM " + table + " WHERE id > ? ORDER BY id";
+        this.byId = "SELECT id, " + column + " FROM " + table + " WHERE id = ?";
+        this.dict = dict;
+        this.connector = connector;
+    }
+
+    // Null for null text. Resolves on the caller's connection inside its open transaction, so no
+    // second connection is needed. New entries are kept in pending until that transaction has
+    // committed and the caller passes them to committed(); a rollback just drops pending, so no id
+    // is ever cached that the table does not have.
+    Integer id(ConnectionPool.PooledConnection pc, String text, Map<String, Integer> pending) throws SQLException {
+        if (text == null) return null;
+        Integer id = ids.get(text);
+        if (id == null) id = pending.get(text);
+        if (id == null) {
+            id = upsert(pc, text);
+            pending.put(text, id);
+        }
+        return id;
+    }
+
+    void committed(Map<String, Integer> pending) {
+        pending.forEach((text, id) -> remember(id, text));
+        pending.clear();
+    }
+
+    private int upsert(ConnectionPool.PooledConnection pc, String text) throws SQLException {
+        PreparedStatement ps = pc.prepare(upsert);
+        ps.setString(1, text);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // As below, borrowing a connection only when the id is new.
+    int code(int id) throws SQLException {
+        Integer code = codes.get(id);
+        if (code != null) return code;
+        try (ConnectionPool.PooledConnection pc = connector.connect()) {
+            return code(pc, id);
+        }
+    }
+
+    // Code for an id read from a fact row on pc; ids start at 1, so 0 is SQL NULL.
+    int code(ConnectionPool.PooledConnection pc, int id) throws SQLException {
+        if (id == 0) return NameDictionary.NONE;
+        Integer code = codes.get(id);
+        if (code == null) {
+            load(pc);
+            code = codes.get(id);
+        }
+        if (code == null) {
+            // Committed behind a higher id that was already loaded.
+            PreparedStatement ps = pc.prepare(byId);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) remember(id, rs.getString(2));
+            }
+            code = codes.get(id);
+        }
+        return code == null ? NameDictionary.NONE : code;
+    }
+
+    // Reads every entry past the last one loaded; the first call brings in the whole table.
+    private synchronized void load(ConnectionPool.PooledConnection pc) throws SQLException {
+        PreparedStatement ps = pc.prepare(since);
+        ps.setInt(1, loadedTo);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                remember(rs.getInt(1), rs.getString(2));
+                loadedTo = rs.getInt(1);
+            }
+        }
+    }
+
+    private void remember(int id, String text) {
+        ids.put(text, id);
+        codes.put(id, dict.encode(text));
+    }
+
+    int size() {
+        return codes.size();
+    }
+}
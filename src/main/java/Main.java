@@ -3,14 +3,18 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class Main extends Application {
 
+    private DashboardController controller;
+
     @Override
     public void start(Stage stage) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/Dashboard.fxml"));
             Scene scene = new Scene(loader.load(), 800, 600);
+            controller = loader.getController();
 
             stage.setTitle("Dawg Watcher by joshmode");
             stage.setScene(scene);
@@ -20,7 +24,17 @@ public class Main extends Application {
         }
     }
 
-    public static void main(String[] args) {
+    @Override
+    public void stop() {
+        if (controller != null) controller.shutdown();
+    }
+
+    // --headless runs only the device ingestion server, with no window.
+    public static void main(String[] args) throws IOException {
+        if (Arrays.asList(args).contains("--headless")) {
+            IngestServer.main(args);
+            return;
+        }
         launch(args);
     }
 }
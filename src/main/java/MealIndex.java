@@ -0,0 +1,100 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+public class MealIndex {
+
+    private static class Day {
+        final List<HistoryRecord.Meal> meals = new ArrayList<>(4);
+        double total;
+    }
+
+    private final TreeMap<LocalDate, Day> days = new TreeMap<>();
+    private int size;
+
+    // Most writes and reads hit the current day, so keep it out of the tree walk.
+    private LocalDate hotDate;
+    private Day hot;
+
+    public void add(HistoryRecord.Meal meal) {
+        Day d = day(meal.date());
+        if (d == null) {
+            d = new Day();
+            days.put(meal.date(), d);
+            hotDate = meal.date();
+            hot = d;
+        }
+        d.meals.add(meal);
+        d.total += meal.amount();
+        size++;
+    }
+
+    private Day day(LocalDate date) {
+        if (date.equals(hotDate)) return hot;
+        Day d = days.get(date);
+        if (d != null) {
+            hotDate = date;
+            hot = d;
+        }
+        return d;
+    }
+
+    public void removeBefore(LocalDate date) {
+        Map<LocalDate, Day> old = days.headMap(date, false);
+        for (Day d : old.values()) size -= d.meals.size();
+        old.clear();
+        if (hotDate != null && hotDate.isBefore(date)) {
+            hotDate = null;
+            hot = null;
+        }
+    }
+
+    public double total(LocalDate date) {
+        Day d = day(date);
+        return d == null ? 0 : d.total;
+    }
+
+    // Inclusive of both ends.
+    public double total(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) return 0;
+        double sum = 0;
+        for (Day d : days.subMap(from, true, to, true).values()) sum += d.total;
+        return sum;
+    }
+
+    // One entry per day with meals, in date order.
+    public DaySeries dailyTotals(LocalDate from, LocalDate to) {
+        DaySeries out = new DaySeries();
+        if (from.isAfter(to)) return out;
+        for (Map.Entry<LocalDate, Day> e : days.subMap(from, true, to, true).entrySet()) out.put(e.getKey(), e.getValue().total);
+        return out;
+    }
+
+    // Amount per food over the range, indexed by NameDictionary.FOODS code.
+    public double[] totalsByFood(LocalDate from, LocalDate to) {
+        double[] out = new double[NameDictionary.FOODS.size()];
+        if (from.isAfter(to)) return out;
+        for (Day d : days.subMap(from, true, to, true).values()) {
+            for (HistoryRecord.Meal m : d.meals) {
+                if (m.food() == NameDictionary.NONE) continue;
+                if (m.food() >= out.length) out = Arrays.copyOf(out, NameDictionary.FOODS.size());
+                out[m.food()] += m.amount();
+            }
+        }
+        return out;
+    }
+
+    public void forEach(Consumer<HistoryRecord.Meal> action) {
+        for (Map.Entry<LocalDate, Day> e : days.entrySet()) {
+            for (HistoryRecord.Meal m : e.getValue().meals) action.accept(m);
+        }
+    }
+
+    public int size() { return size; }
+
+    public int dayCount() { return days.size(); }
+}
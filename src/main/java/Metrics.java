@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide latency and error counters. Timers are created once and kept in static fields,
+// so recording is a handful of atomic adds with no allocation.
+public final class Metrics {
+
+    public interface TimerMXBean {
+        long getCount();
+        long getErrors();
+        double getMeanMillis();
+        double getMaxMillis();
+        double getP50Millis();
+        double getP99Millis();
+    }
+
+    public interface GaugeMXBean {
+        long getValue();
+    }
+
+    // Bucket i counts samples under 2^i microseconds; the last one is open-ended.
+    private static final int BUCKETS = 32;
+
+    public static final class Timer implements TimerMXBean {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public String name() { return name; }
+
+        // Pass the System.nanoTime() taken when the operation started.
+        public void record(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+
+        public void recordNanos(long nanos) {
+            long micros = Math.max(nanos, 0) / 1000;
+            buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1));
+            count.increment();
+            sumNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public void error() {
+            errors.increment();
+        }
+
+        public long bucket(int i) { return buckets.get(i); }
+
+        public long getSumNanos() { return sumNanos.sum(); }
+
+        @Override public long getCount() { return count.sum(); }
+        @Override public long getErrors() { return errors.sum(); }
+        @Override public double getMaxMillis() { return maxNanos.get() / 1e6; }
+        @Override public double getP50Millis() { return percentileMillis(0.5); }
+        @Override public double getP99Millis() { return percentileMillis(0.99); }
+
+        @Override
+        public double getMeanMillis() {
+            long n = getCount();
+            return n == 0 ? 0 : getSumNanos() / 1e6 / n;
+        }
+
+        // Upper bound of the bucket holding the q-th sample, capped at the observed max.
+        public double percentileMillis(double q) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += buckets.get(i);
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total), seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min((1L << i) / 1000.0, getMaxMillis());
+            }
+            return getMaxMillis();
+        }
+    }
+
+    private static final class Gauge implements GaugeMXBean {
+        volatile LongSupplier supplier;
+
+        @Override
+        public long getValue() { return supplier.getAsLong(); }
+    }
+
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    private Metrics() {}
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> register("Latency", n, new Timer(n)));
+    }
+
+    // A later registration under the same name replaces the source, e.g. a reconnected pool.
+    public static void gauge(String name, LongSupplier supplier) {
+        gauges.computeIfAbsent(name, n -> register("Gauge", n, new Gauge())).supplier = supplier;
+    }
+
+    private static <T> T register(String type, String name, T bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("dawgtracker:type=" + type + ",name=" + name);
+            if (!server.isRegistered(on)) server.registerMBean(bean, on);
+        } catch (JMException e) {
+            System.err.println("JMX registration failed: " + e.getMessage());
+        }
+        return bean;
+    }
+
+    // Prometheus text exposition format (0.0.4).
+    public static String prometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# TYPE dawgtracker_latency_seconds histogram\n");
+        for (Timer t : timers.values()) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                cumulative += t.bucket(i);
+                sb.append("dawgtracker_latency_seconds_bucket{op=\"").append(t.name).append("\",le=\"")
+                        .append((1L << i) / 1e6).append("\"} ").append(cumulative).append('\n');
+            }
+            long count = cumulative + t.bucket(BUCKETS - 1);
+            sb.append("dawgtracker_latency_seconds_bucket{op=\"").append(t.name).append("\",le=\"+Inf\"} ").append(count).append('\n');
+            sb.append("dawgtracker_latency_seconds_sum{op=\"").append(t.name).append("\"} ").append(t.getSumNanos() / 1e9).append('\n');
+            sb.append("dawgtracker_latency_seconds_count{op=\"").append(t.name).append("\"} ").append(count).append('\n');
+        }
+        sb.append("# TYPE dawgtracker_errors_total counter\n");
+        for (Timer t : timers.values()) {
+            sb.append("dawgtracker_errors_total{op=\"").append(t.name).append("\"} ").append(t.getErrors()).append('\n');
+        }
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            sb.append("# TYPE dawgtracker_").append(e.getKey()).append(" gauge\n");
+            sb.append("dawgtracker_").append(e.getKey()).append(' ').append(e.getValue().getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static void writeTo(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, prometheus());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
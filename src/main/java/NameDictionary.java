@@ -0,0 +1,43 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Interns text that repeats across history, such as food names and grooming actions, as dense
+// integer codes. Every record holding a code shares one string per distinct value. Codes are
+// process-local; the Postgres lookup tables keep their own ids (see LookupTable).
+public final class NameDictionary {
+
+    public static final int NONE = -1; // null text
+
+    public static final NameDictionary FOODS = new NameDictionary();
+    public static final NameDictionary GROOMING = new NameDictionary();
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[32];
+    private int size;
+
+    public int encode(String name) {
+        if (name == null) return NONE;
+        Integer code = codes.get(name);
+        return code != null ? code : add(name);
+    }
+
+    private synchronized int add(String name) {
+        Integer code = codes.get(name);
+        if (code != null) return code;
+        String[] n = names;
+        if (size == n.length) n = Arrays.copyOf(n, size * 2);
+        n[size] = name;
+        names = n; // publish the slot before the code can be seen
+        codes.put(name, size);
+        return size++;
+    }
+
+    public String name(int code) {
+        return code == NONE ? null : names[code];
+    }
+
+    public int size() {
+        return codes.size();
+    }
+}
@@ -1,13 +1,31 @@
 import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class PetProfile {
-    record Meal(LocalDate date, String name, double amount) {}
 
+    // Notified as history is added, so views can apply just the change.
+    public interface HistoryListener {
+        void added(HistoryRecord r);
+        void loaded(HistoryBatch b);
+        default void evicted(LocalDate before) {}
+    }
+
+    // Rough heap cost per resident row, for the history budget: object headers, the record
+    // and its list or tree slot. Text is shared through NameDictionary, so it is not counted.
+    // Weights and activity live in primitive arrays.
+    static final int MEAL_BYTES = 56;
+    static final int GROOMING_BYTES = 40;
+    static final int SAMPLE_BYTES = 12;
+
+    private final int id;
     private String name;
     private final Clock clock;
 
@@ -20,33 +38,63 @@ public class PetProfile {
     private double optWt = 6.5;
     private double tgtFood = 2.0;
 
-    private List<Meal> meals = new ArrayList<>();
-    private List<String> weights = new ArrayList<>();
-    private List<String> groomingLogs = new ArrayList<>();
+    private MealIndex meals = new MealIndex();
+    private DaySeries weights = new DaySeries();
+    private final WeightTrend weightTrend = new WeightTrend();
+    private boolean trendStale;
+    private List<HistoryRecord.Grooming> groomingLogs = new ArrayList<>();
+
+    private DaySeries dailyActs = new DaySeries(128);
+
+    private LocalDate historyFrom;
+    private HistoryListener listener;
+
+    private final ScratchMonitor scratchMonitor = new ScratchMonitor();
+    private final VitalsBuffer vitals = new VitalsBuffer(4096);
 
-    private Map<LocalDate, Integer> dailyActs = new HashMap<>();
+    public static final String TEETH = "Teeth Brushing";
+    public static final String EARS = "Ear Cleaning";
+    public static final String GROOM = "Grooming";
+    public static final String NEXGARD = "NexGard";
+    public static final String SHOWER = "Shower";
 
-    private Routine teeth;
-    private Routine ears;
-    private Routine groom;
-    private Routine nexgard;
-    private Routine shower;
+    private final Map<String, Routine> routines = new LinkedHashMap<>();
 
     public PetProfile(String name) {
         this(name, Clock.systemDefaultZone());
     }
 
     public PetProfile(String name, Clock clock) {
+        this(1, name, clock);
+    }
+
+    public PetProfile(int id, String name, Clock clock) {
+        this.id = id;
         this.name = name;
         this.clock = clock;
-        this.teeth = new Routine("Teeth Brushing", 1, clock);
-        this.ears = new Routine("Ear Cleaning", 4, clock);
-        this.groom = new Routine("Grooming", 14, clock);
-        this.nexgard = new Routine("NexGard", 30, clock);
-        this.shower = new Routine("Shower", 7, clock);
+        addRoutine(TEETH, 1);
+        addRoutine(EARS, 4);
+        addRoutine(GROOM, 14);
+        addRoutine(NEXGARD, 30);
+        addRoutine(SHOWER, 7);
     }
 
     public void updateStats(int hr, int rr, int act, int scratch) {
+        restoreStats(hr, rr, act, scratch);
+        scratchMonitor.update(scratch);
+        vitals.add(clock.millis(), hr, rr);
+    }
+
+    // Batched collar samples; the newest becomes the displayed heart and respiratory rate.
+    public void addVitals(long[] millis, int[] hr, int[] rr, int count) {
+        if (count == 0) return;
+        vitals.addAll(millis, hr, rr, count);
+        this.hr = hr[count - 1];
+        this.rr = rr[count - 1];
+    }
+
+    // Same as updateStats but for values already seen, e.g. loaded from storage.
+    public void restoreStats(int hr, int rr, int act, int scratch) {
         this.hr = hr;
         this.rr = rr;
         this.act = act;
@@ -59,7 +107,9 @@ public class PetProfile {
     }
 
     public void addMeal(LocalDate date, String name, double amount) {
-        meals.add(new Meal(date, name, amount));
+        HistoryRecord.Meal m = new HistoryRecord.Meal(date, name, amount);
+        meals.add(m);
+        if (listener != null) listener.added(m);
     }
 
     public void addWeight(double weight) {
@@ -67,7 +117,9 @@ public class PetProfile {
     }
 
     public void addWeight(LocalDate date, double weight) {
-        weights.add(date + ": " + weight + " kg");
+        weights.add(date, weight);
+        if (!trendStale && !weightTrend.add(date, weight)) trendStale = true;
+        if (listener != null) listener.added(new HistoryRecord.Weight(date, weight));
     }
 
     public void logGrooming(String description) {
@@ -75,7 +127,24 @@ public class PetProfile {
     }
 
     public void logGrooming(LocalDate date, String description) {
-        groomingLogs.add(date + ": " + description);
+        HistoryRecord.Grooming g = new HistoryRecord.Grooming(date, description);
+        insertByDate(groomingLogs, g);
+        if (listener != null) listener.added(g);
+    }
+
+    // Live entries arrive in date order; only back-filled history pays for the search.
+    private static <T extends HistoryRecord> void insertByDate(List<T> list, T item) {
+        int lo = 0, hi = list.size();
+        if (hi > 0 && list.get(hi - 1).date().isAfter(item.date())) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (list.get(mid).date().isAfter(item.date())) hi = mid;
+                else lo = mid + 1;
+            }
+        } else {
+            lo = hi;
+        }
+        list.add(lo, item);
     }
 
     public void setTargets(int tgtAct, double optWt, double tgtFood) {
@@ -86,8 +155,51 @@ public class PetProfile {
 
     public void addDailyActivity(LocalDate date, int minutes) {
         dailyActs.put(date, minutes);
+        if (listener != null) listener.added(new HistoryRecord.Activity(date, minutes));
+    }
+
+    public HistoryListener getHistoryListener() { return listener; }
+
+    public void setHistoryListener(HistoryListener listener) { this.listener = listener; }
+
+    public LocalDate getHistoryFrom() { return historyFrom; }
+
+    public void setHistoryFrom(LocalDate from) {
+        if (historyFrom == null || from.isBefore(historyFrom)) historyFrom = from;
     }
 
+    // Drops resident history before the date. The profile still covers everything from the date on,
+    // so range queries reaching further back go to storage and loadHistory can bring the days back.
+    public void evictBefore(LocalDate date) {
+        if (historyFrom == null || !historyFrom.isBefore(date)) return;
+        meals.removeBefore(date);
+        weights.removeBefore(date);
+        dailyActs.removeBefore(date);
+        int n = 0;
+        while (n < groomingLogs.size() && groomingLogs.get(n).date().isBefore(date)) n++;
+        if (n > 0) groomingLogs = new ArrayList<>(groomingLogs.subList(n, groomingLogs.size()));
+        historyFrom = date;
+        trendStale = true;
+        if (listener != null) listener.evicted(date);
+    }
+
+    // Estimated heap bytes of resident history per epoch day.
+    public Map<Long, Long> historyBytesByDay() {
+        Map<Long, Long> bytes = new HashMap<>();
+        meals.forEach(m -> bytes.merge(m.date().toEpochDay(), (long) MEAL_BYTES, Long::sum));
+        for (HistoryRecord.Grooming g : groomingLogs) bytes.merge(g.date().toEpochDay(), (long) GROOMING_BYTES, Long::sum);
+        for (DaySeries.View v : new DaySeries.View[]{weights.all(), dailyActs.all()}) {
+            for (int i = 0; i < v.size(); i++) bytes.merge((long) v.epochDay(i), (long) SAMPLE_BYTES, Long::sum);
+        }
+        return bytes;
+    }
+
+    // True when every stored row from this date on is loaded, so range queries can stay in memory.
+    public boolean covers(LocalDate from) {
+        return historyFrom != null && !from.isBefore(historyFrom);
+    }
+
+    public int getId() { return id; }
     public String getName() { return name; }
 
     public int getHr() { return hr; }
@@ -95,33 +207,153 @@ public class PetProfile {
     public int getAct() { return act; }
     public int getScratch() { return scratch; }
 
+    public ScratchMonitor getScratchMonitor() { return scratchMonitor; }
+    public VitalsBuffer getVitals() { return vitals; }
+
     public int getTgtAct() { return tgtAct; }
     public double getOptWt() { return optWt; }
     public double getTgtFood() { return tgtFood; }
 
     public double getDailyFoodIntake() {
-        LocalDate today = LocalDate.now(clock);
-        double total = 0;
-        for (Meal meal : meals) {
-            if (meal.date.equals(today)) total += meal.amount;
+        return meals.total(LocalDate.now(clock));
+    }
+
+    public double getFoodIntake(LocalDate date) {
+        return meals.total(date);
+    }
+
+    public double getFoodIntake(LocalDate from, LocalDate to) {
+        return meals.total(from, to);
+    }
+
+    public DaySeries getDailyFoodTotals(LocalDate from, LocalDate to) {
+        return meals.dailyTotals(from, to);
+    }
+
+    // Amount eaten per food over the range, largest first.
+    public Map<String, Double> getFoodTotals(LocalDate from, LocalDate to) {
+        return byAmount(meals.totalsByFood(from, to));
+    }
+
+    public double[] getFoodTotalsByCode(LocalDate from, LocalDate to) {
+        return meals.totalsByFood(from, to);
+    }
+
+    static Map<String, Double> byAmount(double[] byFood) {
+        Integer[] order = new Integer[byFood.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(byFood[b], byFood[a]));
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (int code : order) {
+            if (byFood[code] > 0) out.put(NameDictionary.FOODS.name(code), byFood[code]);
         }
-        return total;
+        return out;
+    }
+
+    public double getWeeklyFoodIntake() {
+        LocalDate today = LocalDate.now(clock);
+        return meals.total(today.minusDays(6), today);
+    }
+
+    public double getMonthlyFoodIntake() {
+        LocalDate today = LocalDate.now(clock);
+        return meals.total(today.minusDays(29), today);
+    }
+
+    public List<HistoryRecord.Meal> getMealRecords() {
+        List<HistoryRecord.Meal> list = new ArrayList<>(meals.size());
+        meals.forEach(list::add);
+        return list;
+    }
+
+    public List<HistoryRecord.Weight> getWeightRecords() {
+        DaySeries.View v = weights.all();
+        List<HistoryRecord.Weight> list = new ArrayList<>(v.size());
+        for (int i = 0; i < v.size(); i++) list.add(new HistoryRecord.Weight(v.date(i), v.value(i)));
+        return list;
+    }
+
+    public List<HistoryRecord.Grooming> getGroomingRecords() {
+        return new ArrayList<>(groomingLogs);
+    }
+
+    public List<HistoryRecord.Activity> getActivityRecords() {
+        DaySeries.View v = dailyActs.all();
+        List<HistoryRecord.Activity> list = new ArrayList<>(v.size());
+        for (int i = 0; i < v.size(); i++) list.add(new HistoryRecord.Activity(v.date(i), (int) v.value(i)));
+        return list;
     }
 
     public List<String> getMealLogs() {
+        List<String> list = new ArrayList<>(meals.size());
+        meals.forEach(meal -> list.add(meal.date() + " | " + meal.name() + ": " + meal.amount()));
+        return list;
+    }
+
+    public List<String> getWeightLogs() {
+        DaySeries.View v = weights.all();
+        List<String> list = new ArrayList<>(v.size());
+        for (int i = 0; i < v.size(); i++) list.add(v.date(i) + ": " + v.value(i) + " kg");
+        return list;
+    }
+
+    public List<String> getGroomingLogs() {
         List<String> list = new ArrayList<>();
-        for (Meal meal : meals) {
-            list.add(meal.date + " | " + meal.name + ": " + meal.amount);
-        }
+        for (HistoryRecord.Grooming g : groomingLogs) list.add(g.date() + ": " + g.description());
         return list;
     }
-    public List<String> getWeightLogs() { return new ArrayList<>(weights); }
-    public List<String> getGroomingLogs() { return new ArrayList<>(groomingLogs); }
-    public Map<LocalDate, Integer> getDailyActivities() { return new HashMap<>(dailyActs); }
 
-    public Routine getTeeth() { return teeth; }
-    public Routine getEars() { return ears; }
-    public Routine getGroom() { return groom; }
-    public Routine getNexgard() { return nexgard; }
-    public Routine getShower() { return shower; }
+    public Map<LocalDate, Integer> getDailyActivities() {
+        DaySeries.View v = dailyActs.all();
+        Map<LocalDate, Integer> map = new HashMap<>(v.size() * 2);
+        for (int i = 0; i < v.size(); i++) map.put(v.date(i), (int) v.value(i));
+        return map;
+    }
+
+    public DaySeries.View getWeightSeries() { return weights.all(); }
+    public DaySeries.View getWeightSeries(LocalDate from, LocalDate to) { return weights.slice(from, to); }
+    // Back-filled weights older than the newest one make the trend rebuild its window on next read.
+    public WeightTrend getWeightTrend() {
+        if (trendStale) {
+            weightTrend.rebuild(weights.all());
+            trendStale = false;
+        }
+        return weightTrend;
+    }
+
+    public DaySeries.View getActivitySeries() { return dailyActs.all(); }
+    public DaySeries.View getActivitySeries(LocalDate from, LocalDate to) { return dailyActs.slice(from, to); }
+
+    // Days in the range whose activity met the current target.
+    public int getGoalDays(LocalDate from, LocalDate to) {
+        DaySeries.View v = dailyActs.slice(from, to);
+        int n = 0;
+        for (int i = 0; i < v.size(); i++) if (v.value(i) >= tgtAct) n++;
+        return n;
+    }
+
+    public Routine getRoutine(String name) { return routines.get(name); }
+
+    // Returns the existing routine if the name is already taken.
+    public Routine addRoutine(String name, int freq) {
+        return routines.computeIfAbsent(name, n -> new Routine(n, freq, clock));
+    }
+
+    // The built-in routines back fixed dashboard rows and cannot be removed.
+    public boolean removeRoutine(String name) {
+        if (isBuiltIn(name)) return false;
+        return routines.remove(name) != null;
+    }
+
+    public static boolean isBuiltIn(String name) {
+        return TEETH.equals(name) || EARS.equals(name) || GROOM.equals(name) || NEXGARD.equals(name) || SHOWER.equals(name);
+    }
+
+    public Collection<Routine> getRoutines() { return Collections.unmodifiableCollection(routines.values()); }
+
+    public Routine getTeeth() { return routines.get(TEETH); }
+    public Routine getEars() { return routines.get(EARS); }
+    public Routine getGroom() { return routines.get(GROOM); }
+    public Routine getNexgard() { return routines.get(NEXGARD); }
+    public Routine getShower() { return routines.get(SHOWER); }
 }
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+public class PetRegistry {
+
+    private static class Entry {
+        final PetProfile profile;
+        volatile long lastAccess;
+
+        Entry(PetProfile profile, long now) {
+            this.profile = profile;
+            this.lastAccess = now;
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, Entry> pets = new ConcurrentHashMap<>();
+    private final IntFunction<PetProfile> loader;
+    private final int maxResident;
+    private final long idleMs;
+    private final LongSupplier clock;
+
+    public PetRegistry(IntFunction<PetProfile> loader, int maxResident, long idleMs) {
+        this(loader, maxResident, idleMs, System::currentTimeMillis);
+    }
+
+    public PetRegistry(IntFunction<PetProfile> loader, int maxResident, long idleMs, LongSupplier clock) {
+        if (maxResident <= 0) throw new IllegalArgumentException("Registry size must be positive");
+        this.loader = loader;
+        this.maxResident = maxResident;
+        this.idleMs = idleMs;
+        this.clock = clock;
+    }
+
+    // Loads the profile on first use. The load runs outside the map, so it holds no bin lock and
+    // may itself use the registry; if two callers race, the first profile stored wins.
+    public PetProfile get(int petId) {
+        long now = clock.getAsLong();
+        Entry e = pets.get(petId);
+        if (e == null) {
+            Entry loaded = new Entry(loader.apply(petId), now);
+            e = pets.putIfAbsent(petId, loaded);
+            if (e == null) e = loaded;
+        }
+        e.lastAccess = now;
+        if (pets.size() > maxResident) evictOldest(petId);
+        return e.profile;
+    }
+
+    // Counts as a use, but never loads.
+    public PetProfile getIfLoaded(int petId) {
+        Entry e = pets.get(petId);
+        if (e == null) return null;
+        e.lastAccess = clock.getAsLong();
+        return e.profile;
+    }
+
+    public boolean isLoaded(int petId) { return pets.containsKey(petId); }
+
+    public int size() { return pets.size(); }
+
+    public List<PetProfile> loaded() {
+        List<PetProfile> list = new ArrayList<>(pets.size());
+        for (Entry e : pets.values()) list.add(e.profile);
+        return list;
+    }
+
+    public void invalidate(int petId) { pets.remove(petId); }
+
+    public int evictIdle() {
+        long cutoff = clock.getAsLong() - idleMs;
+        int before = pets.size();
+        pets.values().removeIf(e -> e.lastAccess < cutoff);
+        return before - pets.size();
+    }
+
+    private void evictOldest(int keep) {
+        while (pets.size() > maxResident) {
+            Map.Entry<Integer, Entry> oldest = null;
+            for (Map.Entry<Integer, Entry> e : pets.entrySet()) {
+                if (e.getKey() == keep) continue;
+                if (oldest == null || e.getValue().lastAccess < oldest.getValue().lastAccess) oldest = e;
+            }
+            if (oldest == null) return;
+            pets.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+}
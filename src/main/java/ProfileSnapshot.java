@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+// Binary image of a profile's loaded history plus the highest row ids it covers,
+// so a restart only has to fetch rows inserted after it was taken.
+public class ProfileSnapshot {
+
+    private static final int MAGIC = 0x44415747; // "DAWG"
+    private static final int FORMAT = 2;
+
+    final int petId;
+    final long dataVersion;
+    final long lastMealId;
+    final long lastWeightId;
+    final long lastGroomId;
+    final LocalDate taken;
+    final HistoryBatch history;
+
+    ProfileSnapshot(int petId, long dataVersion, long lastMealId, long lastWeightId, long lastGroomId, LocalDate taken, HistoryBatch history) {
+        this.petId = petId;
+        this.dataVersion = dataVersion;
+        this.lastMealId = lastMealId;
+        this.lastWeightId = lastWeightId;
+        this.lastGroomId = lastGroomId;
+        this.taken = taken;
+        this.history = history;
+    }
+
+    public static void write(Path file, PetProfile p, long dataVersion, long lastMealId, long lastWeightId, long lastGroomId) throws IOException {
+        write(file, p.getId(), HistoryBatch.of(p), dataVersion, lastMealId, lastWeightId, lastGroomId);
+    }
+
+    public static void write(Path file, int petId, HistoryBatch h, long dataVersion, long lastMealId, long lastWeightId, long lastGroomId) throws IOException {
+        List<HistoryRecord.Meal> meals = h.meals;
+        List<HistoryRecord.Weight> weights = h.weights;
+        List<HistoryRecord.Grooming> grooming = h.grooming;
+        List<HistoryRecord.Activity> acts = h.activity;
+
+        int size = 68 + weights.size() * 12 + acts.size() * 8;
+        for (HistoryRecord.Meal m : meals) size += 14 + utf8Length(m.name());
+        for (HistoryRecord.Grooming g : grooming) size += 6 + utf8Length(g.description());
+
+        ByteBuffer b = ByteBuffer.allocate(size);
+        b.putInt(MAGIC).putInt(FORMAT).putInt(petId).putLong(dataVersion);
+        b.putLong(lastMealId).putLong(lastWeightId).putLong(lastGroomId);
+        b.putInt((int) LocalDate.now().toEpochDay()).putInt((int) h.from.toEpochDay());
+
+        b.putInt(meals.size());
+        for (HistoryRecord.Meal m : meals) {
+            b.putInt((int) m.date().toEpochDay()).putDouble(m.amount());
+            putString(b, m.name());
+        }
+        b.putInt(weights.size());
+        for (HistoryRecord.Weight w : weights) b.putInt((int) w.date().toEpochDay()).putDouble(w.weight());
+        b.putInt(grooming.size());
+        for (HistoryRecord.Grooming g : grooming) {
+            b.putInt((int) g.date().toEpochDay());
+            putString(b, g.description());
+        }
+        b.putInt(acts.size());
+        for (HistoryRecord.Activity a : acts) b.putInt((int) a.date().toEpochDay()).putInt(a.minutes());
+        b.flip();
+
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (b.hasRemaining()) ch.write(b);
+            ch.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Null if the file is missing, from another format or truncated.
+    public static ProfileSnapshot read(Path file) {
+        if (!Files.exists(file)) return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (b.getInt() != MAGIC || b.getInt() != FORMAT) return null;
+            int petId = b.getInt();
+            long version = b.getLong();
+            long lastMeal = b.getLong(), lastWeight = b.getLong(), lastGroom = b.getLong();
+            LocalDate taken = LocalDate.ofEpochDay(b.getInt());
+            HistoryBatch h = new HistoryBatch(LocalDate.ofEpochDay(b.getInt()));
+
+            for (int i = b.getInt(); i > 0; i--) {
+                LocalDate d = LocalDate.ofEpochDay(b.getInt());
+                double amount = b.getDouble();
+                h.meals.add(new HistoryRecord.Meal(d, getString(b), amount));
+            }
+            for (int i = b.getInt(); i > 0; i--) h.weights.add(new HistoryRecord.Weight(LocalDate.ofEpochDay(b.getInt()), b.getDouble()));
+            for (int i = b.getInt(); i > 0; i--) {
+                LocalDate d = LocalDate.ofEpochDay(b.getInt());
+                h.grooming.add(new HistoryRecord.Grooming(d, getString(b)));
+            }
+            for (int i = b.getInt(); i > 0; i--) h.activity.add(new HistoryRecord.Activity(LocalDate.ofEpochDay(b.getInt()), b.getInt()));
+
+            return new ProfileSnapshot(petId, version, lastMeal, lastWeight, lastGroom, taken, h);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            System.err.println("Snapshot unreadable, doing a full load: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static int utf8Length(String s) {
+        return s == null ? 0 : Math.min(s.getBytes(StandardCharsets.UTF_8).length, Short.MAX_VALUE);
+    }
+
+    // A length of -1 stands for null text.
+    private static void putString(ByteBuffer b, String s) {
+        if (s == null) {
+            b.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int n = Math.min(bytes.length, Short.MAX_VALUE);
+        b.putShort((short) n).put(bytes, 0, n);
+    }
+
+    private static String getString(ByteBuffer b) {
+        short n = b.getShort();
+        if (n == -1) return null;
+        byte[] bytes = new byte[n];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -35,6 +35,8 @@ public class Routine {
 
     public void done() { this.last = LocalDate.now(clock); }
 
+    public LocalDate nextDue() { return last.plusDays(freq); }
+
     public long dueIn() {
         return freq - ChronoUnit.DAYS.between(last, LocalDate.now(clock));
     }
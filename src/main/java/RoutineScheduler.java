@@ -0,0 +1,131 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Min-heap of routines across all pets, keyed by next due day. Rescheduling leaves the old
+// heap entry behind as stale; it is skipped when it reaches the top.
+public class RoutineScheduler implements AutoCloseable {
+
+    public record Due(int petId, Routine routine, LocalDate dueDate) {}
+
+    private record Key(int petId, String name) {}
+
+    private static class Entry {
+        final Key key;
+        final Routine routine;
+        final long dueDay;
+        boolean live = true;
+
+        Entry(Key key, Routine routine, long dueDay) {
+            this.key = key;
+            this.routine = routine;
+            this.dueDay = dueDay;
+        }
+    }
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>((a, b) -> Long.compare(a.dueDay, b.dueDay));
+    private final Map<Key, Entry> current = new HashMap<>();
+    private final Set<Integer> pets = new HashSet<>();
+    private final Clock clock;
+    private ScheduledExecutorService timer;
+
+    public RoutineScheduler() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public RoutineScheduler(Clock clock) {
+        this.clock = clock;
+    }
+
+    // Schedules a pet's routines the first time the pet is seen. Later calls, e.g. each time its
+    // profile is loaded, leave fired and rescheduled entries alone.
+    public synchronized void adopt(int petId, Collection<Routine> routines) {
+        if (pets.contains(petId)) return;
+        for (Routine r : routines) schedule(petId, r);
+        pets.add(petId);
+    }
+
+    // Call again whenever the routine's last date or interval changes.
+    public synchronized void schedule(int petId, Routine r) {
+        pets.add(petId);
+        Key key = new Key(petId, r.getName());
+        Entry old = current.get(key);
+        if (old != null) old.live = false;
+        Entry e = new Entry(key, r, r.nextDue().toEpochDay());
+        current.put(key, e);
+        heap.add(e);
+        if (heap.size() > 2 * current.size() + 64) rebuild();
+    }
+
+    public synchronized void cancel(int petId, String name) {
+        Entry e = current.remove(new Key(petId, name));
+        if (e != null) e.live = false;
+    }
+
+    public synchronized int size() { return current.size(); }
+
+    public synchronized Due peek() {
+        Entry e = top();
+        return e == null ? null : new Due(e.key.petId(), e.routine, LocalDate.ofEpochDay(e.dueDay));
+    }
+
+    // Removes and returns everything due by today. A fired routine stays quiet until it is rescheduled.
+    public synchronized List<Due> pollDue() {
+        long today = LocalDate.now(clock).toEpochDay();
+        List<Due> due = new ArrayList<>();
+        for (Entry e = top(); e != null && e.dueDay <= today; e = top()) {
+            heap.poll();
+            current.remove(e.key);
+            due.add(new Due(e.key.petId(), e.routine, LocalDate.ofEpochDay(e.dueDay)));
+        }
+        return due;
+    }
+
+    public synchronized void start(long periodMs, Consumer<List<Due>> listener) {
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "routine-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> {
+            try {
+                List<Due> due = pollDue();
+                if (!due.isEmpty()) listener.accept(due);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, 0, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) timer.shutdownNow();
+        timer = null;
+    }
+
+    private Entry top() {
+        Entry e = heap.peek();
+        while (e != null && !e.live) {
+            heap.poll();
+            e = heap.peek();
+        }
+        return e;
+    }
+
+    private void rebuild() {
+        heap.clear();
+        heap.addAll(current.values());
+    }
+}
@@ -0,0 +1,172 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// Ordered schema changes, each applied once in its own transaction and recorded in
+// schema_version. A database that is up to date costs a single query at startup.
+// Steps stay idempotent so databases created before versioning adopt them safely.
+public final class SchemaMigrations {
+
+    interface Step {
+        void apply(Connection conn, Statement s) throws SQLException;
+    }
+
+    record Migration(int version, String description, Step step) {}
+
+    private static final String UNDEFINED_TABLE = "42P01";
+    private static final long LOCK_KEY = 0x44415747L; // serialises concurrent starters
+
+    static final List<Migration> ALL = List.of(
+            new Migration(1, "pets and history tables", (conn, s) -> {
+                s.execute("CREATE TABLE IF NOT EXISTS pet_stats (" +
+                        "id INT PRIMARY KEY, name VARCHAR(255), hr INT, rr INT, act INT, scratch INT, " +
+                        "tgt_act INT, opt_wt DOUBLE PRECISION, tgt_food DOUBLE PRECISION, last_updated DATE)");
+                s.execute("ALTER TABLE pet_stats ADD COLUMN IF NOT EXISTS last_updated DATE");
+                s.execute("ALTER TABLE pet_stats ADD COLUMN IF NOT EXISTS name VARCHAR(255)");
+                s.execute("ALTER TABLE pet_stats DROP CONSTRAINT IF EXISTS pet_stats_id_check");
+                s.execute("CREATE SEQUENCE IF NOT EXISTS pet_id_seq START 2");
+                s.execute("INSERT INTO pet_stats (id, name, hr, rr, act, scratch, tgt_act, opt_wt, tgt_food, last_updated) " +
+                        "VALUES (1, 'Jojo', 0, 0, 0, 0, 60, 6.5, 2.0, CURRENT_DATE) ON CONFLICT (id) DO NOTHING");
+                s.execute("UPDATE pet_stats SET name = 'Jojo' WHERE id = 1 AND name IS NULL");
+
+                s.execute("CREATE TABLE IF NOT EXISTS meals (id SERIAL PRIMARY KEY, pet_id INT NOT NULL DEFAULT 1, date DATE, name VARCHAR(255), amount DOUBLE PRECISION)");
+                s.execute("CREATE TABLE IF NOT EXISTS weights (id SERIAL PRIMARY KEY, pet_id INT NOT NULL DEFAULT 1, date DATE, weight DOUBLE PRECISION)");
+                s.execute("CREATE TABLE IF NOT EXISTS grooming_logs (id SERIAL PRIMARY KEY, pet_id INT NOT NULL DEFAULT 1, date DATE, description TEXT)");
+                s.execute("CREATE TABLE IF NOT EXISTS routines (pet_id INT NOT NULL DEFAULT 1, name VARCHAR(255), last_done DATE, interval_days INT, PRIMARY KEY (pet_id, name))");
+                s.execute("CREATE TABLE IF NOT EXISTS daily_activity (pet_id INT NOT NULL DEFAULT 1, date DATE, minutes INT, PRIMARY KEY (pet_id, date))");
+                s.execute("CREATE TABLE IF NOT EXISTS scratch_log (id BIGSERIAL PRIMARY KEY, pet_id INT NOT NULL DEFAULT 1, recorded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, scratch INT)");
+            }),
+            new Migration(2, "key single-pet tables by pet", (conn, s) -> {
+                for (String table : new String[]{"meals", "weights", "grooming_logs", "scratch_log"}) {
+                    s.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS pet_id INT NOT NULL DEFAULT 1");
+                }
+                for (String[] t : new String[][]{{"routines", "name"}, {"daily_activity", "date"}}) {
+                    if (!hasColumn(conn, t[0], "pet_id")) {
+                        s.execute("ALTER TABLE " + t[0] + " ADD COLUMN pet_id INT NOT NULL DEFAULT 1");
+                        s.execute("ALTER TABLE " + t[0] + " DROP CONSTRAINT IF EXISTS " + t[0] + "_pkey");
+                        s.execute("ALTER TABLE " + t[0] + " ADD PRIMARY KEY (pet_id, " + t[1] + ")");
+                    }
+                }
+            }),
+            new Migration(3, "per-pet date indexes", (conn, s) -> {
+                s.execute("CREATE INDEX IF NOT EXISTS meals_pet_date_idx ON meals (pet_id, date)");
+                s.execute("CREATE INDEX IF NOT EXISTS weights_pet_date_idx ON weights (pet_id, date)");
+                s.execute("CREATE INDEX IF NOT EXISTS grooming_logs_pet_date_idx ON grooming_logs (pet_id, date)");
+                s.execute("CREATE INDEX IF NOT EXISTS scratch_log_pet_idx ON scratch_log (pet_id, id)");
+            }),
+            new Migration(4, "vitals partitioned by month", (conn, s) -> {
+                s.execute("CREATE TABLE IF NOT EXISTS vitals (pet_id INT NOT NULL, ts TIMESTAMPTZ NOT NULL, hr INT, rr INT) PARTITION BY RANGE (ts)");
+                s.execute("CREATE INDEX IF NOT EXISTS vitals_pet_ts_idx ON vitals (pet_id, ts)");
+            }),
+            new Migration(5, "weekly and monthly activity rollups", (conn, s) -> {
+                s.execute("CREATE TABLE IF NOT EXISTS activity_rollup (pet_id INT NOT NULL, period VARCHAR(5) NOT NULL, start DATE NOT NULL, " +
+                        "total BIGINT, days INT, goal_days INT, PRIMARY KEY (pet_id, period, start))");
+                // Backfilled with the rollup query as it stood at version 5, so later changes to the live one cannot alter it.
+                s.execute("INSERT INTO activity_rollup (pet_id, period, start, total, days, goal_days) " +
+                        "SELECT d.pet_id, 'week', date_trunc('week', d.date)::date, SUM(d.minutes), COUNT(*), " +
+                        "COUNT(*) FILTER (WHERE d.minutes >= s.tgt_act) " +
+                        "FROM daily_activity d JOIN pet_stats s ON s.id = d.pet_id " +
+                        "GROUP BY 1, 2, 3 ON CONFLICT (pet_id, period, start) DO UPDATE SET " +
+                        "total = EXCLUDED.total, days = EXCLUDED.days, goal_days = EXCLUDED.goal_days");
+                s.execute("INSERT INTO activity_rollup (pet_id, period, start, total, days, goal_days) " +
+                        "SELECT d.pet_id, 'month', date_trunc('month', d.date)::date, SUM(d.minutes), COUNT(*), " +
+                        "COUNT(*) FILTER (WHERE d.minutes >= s.tgt_act) " +
+                        "FROM daily_activity d JOIN pet_stats s ON s.id = d.pet_id " +
+                        "GROUP BY 1, 2, 3 ON CONFLICT (pet_id, period, start) DO UPDATE SET " +
+                        "total = EXCLUDED.total, days = EXCLUDED.days, goal_days = EXCLUDED.goal_days");
+            }),
+            new Migration(6, "snapshot data version", (conn, s) ->
+                    s.execute("ALTER TABLE pet_stats ADD COLUMN IF NOT EXISTS data_version BIGINT NOT NULL DEFAULT 0")),
+            new Migration(7, "dictionary-encoded food names and grooming actions", (conn, s) -> {
+                s.execute("CREATE TABLE IF NOT EXISTS foods (id SERIAL PRIMARY KEY, name VARCHAR(255) NOT NULL UNIQUE)");
+                s.execute("CREATE TABLE IF NOT EXISTS grooming_actions (id SERIAL PRIMARY KEY, description TEXT NOT NULL UNIQUE)");
+                encode(conn, s, "meals", "name", "food_id", "foods");
+                encode(conn, s, "grooming_logs", "description", "action_id", "grooming_actions");
+            }),
+            // Version 3 used to drop these; all-pet exports bound pet_id only by the int range,
+            // so they need an index that leads with the date.
+            new Migration(8, "date indexes for all-pet range queries", (conn, s) -> {
+                s.execute("CREATE INDEX IF NOT EXISTS meals_date_idx ON meals (date)");
+                s.execute("CREATE INDEX IF NOT EXISTS weights_date_idx ON weights (date)");
+                s.execute("CREATE INDEX IF NOT EXISTS grooming_logs_date_idx ON grooming_logs (date)");
+            }));
+
+    public static int latest() {
+        return ALL.get(ALL.size() - 1).version();
+    }
+
+    // Returns the number of migrations applied.
+    public static int run(Connection conn) throws SQLException {
+        if (current(conn) >= latest()) return 0;
+
+        boolean auto = conn.getAutoCommit();
+        int applied = 0;
+        try (Statement s = conn.createStatement()) {
+            s.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY, description TEXT, " +
+                    "applied_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+            conn.setAutoCommit(false);
+            for (Migration m : ALL) {
+                try {
+                    s.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+                    if (isApplied(conn, m.version())) {
+                        conn.commit();
+                        continue;
+                    }
+                    m.step().apply(conn, s);
+                    try (PreparedStatement ps = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        ps.setInt(1, m.version());
+                        ps.setString(2, m.description());
+                        ps.executeUpdate();
+                    }
+                    conn.commit();
+                    applied++;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + m.version() + " (" + m.description() + ") failed: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(auto);
+        }
+        return applied;
+    }
+
+    // 0 when schema_version does not exist yet. Call with autocommit on, so a miss leaves no aborted transaction.
+    static int current(Connection conn) throws SQLException {
+        try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery("SELECT max(version) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            if (UNDEFINED_TABLE.equals(e.getSQLState())) return 0;
+            throw e;
+        }
+    }
+
+    private static boolean isApplied(Connection conn, int version) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            ps.setInt(1, version);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Moves a repeated text column of a fact table into a lookup table, leaving an id in its place.
+    private static void encode(Connection conn, Statement s, String table, String text, String id, String lookup) throws SQLException {
+        s.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + id + " INT REFERENCES " + lookup + " (id)");
+        if (!hasColumn(conn, table, text)) return;
+        s.execute("INSERT INTO " + lookup + " (" + text + ") SELECT DISTINCT " + text + " FROM " + table +
+                " WHERE " + text + " IS NOT NULL ON CONFLICT (" + text + ") DO NOTHING");
+        s.execute("UPDATE " + table + " t SET " + id + " = l.id FROM " + lookup + " l WHERE l." + text + " = t." + text);
+        s.execute("ALTER TABLE " + table + " DROP COLUMN " + text);
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getColumns(null, conn.getSchema(), table, column)) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+public class ScratchMonitor {
+
+    private final double alpha;
+    private final double slack;
+    private final double threshold;
+    private final int warmup;
+
+    private long count;
+    private double mean;
+    private double var;
+    private double cusum;
+    private double score;
+    private boolean alerting;
+
+    public ScratchMonitor() {
+        this(0.1, 0.5, 4.0, 5);
+    }
+
+    // alpha: EWMA weight, slack/threshold: CUSUM k and h in standard deviations.
+    public ScratchMonitor(double alpha, double slack, double threshold, int warmup) {
+        if (alpha <= 0 || alpha > 1) throw new IllegalArgumentException("Alpha must be in (0, 1]");
+        this.alpha = alpha;
+        this.slack = slack;
+        this.threshold = threshold;
+        this.warmup = warmup;
+    }
+
+    public boolean update(int scratch) {
+        double x = scratch;
+        count++;
+        if (count == 1) {
+            mean = x;
+            score = 0;
+            alerting = false;
+            return false;
+        }
+
+        // Score against the baseline before the new sample pulls it along.
+        double sd = Math.sqrt(var);
+        double z = (x - mean) / Math.max(sd, 1.0);
+        cusum = Math.max(0, cusum + z - slack);
+        score = cusum;
+        alerting = count > warmup && cusum > threshold;
+
+        double diff = x - mean;
+        mean += alpha * diff;
+        var = (1 - alpha) * (var + alpha * diff * diff);
+        return alerting;
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return mean; }
+    public double getStdDev() { return Math.sqrt(var); }
+    public double getScore() { return score; }
+    public boolean isAlerting() { return alerting; }
+
+    public void reset() {
+        count = 0;
+        mean = 0;
+        var = 0;
+        cusum = 0;
+        score = 0;
+        alerting = false;
+    }
+}
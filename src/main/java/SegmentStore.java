@@ -0,0 +1,797 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Embedded append-only store: records go into fixed-size memory-mapped segment files,
+// and a MANIFEST names the live segments so compaction can swap generations atomically.
+public class SegmentStore implements Storage {
+
+    private static final byte PET = 1, STATS = 2, SETTINGS = 3, ROUTINE = 4, MEAL = 5, WEIGHT = 6,
+            GROOM = 7, ACTIVITY = 8, SCRATCH = 9, VITALS = 10;
+
+    // Record layout: int length (of everything after it), byte type, int pet id, body.
+    // The length is written last, so a torn append reads as the end of the log.
+    private static final int HEADER = 9;
+    private static final int MAX_VITALS = 4096;
+    private static final int MAX_BODY = MAX_VITALS * 16 + 64;
+    private static final int SCRATCH_REPLAY = 1000;
+    private static final int historyDays = Integer.parseInt(System.getenv().getOrDefault("HISTORY_DAYS", "90"));
+
+    private static class Segment {
+        final int no;
+        final Path path;
+        final FileChannel ch;
+        final MappedByteBuffer buf;
+        int end;
+
+        Segment(int no, Path path, FileChannel ch, MappedByteBuffer buf) {
+            this.no = no;
+            this.path = path;
+            this.ch = ch;
+            this.buf = buf;
+        }
+    }
+
+    private static class PetState {
+        String name;
+        int hr, rr, act, scratch;
+        long lastUpdated = Long.MIN_VALUE;
+        int tgtAct = 60;
+        double optWt = 6.5;
+        double tgtFood = 2.0;
+        final Map<String, long[]> routines = new LinkedHashMap<>();
+
+        PetState copy() {
+            PetState c = new PetState();
+            c.name = name;
+            c.hr = hr;
+            c.rr = rr;
+            c.act = act;
+            c.scratch = scratch;
+            c.lastUpdated = lastUpdated;
+            c.tgtAct = tgtAct;
+            c.optWt = optWt;
+            c.tgtFood = tgtFood;
+            routines.forEach((k, v) -> c.routines.put(k, v.clone()));
+            return c;
+        }
+    }
+
+    // Growable list of record locations, each segment position << 32 | offset.
+    private static class Locations {
+        long[] at = new long[4];
+        int n;
+
+        void add(long loc) {
+            if (n == at.length) at = Arrays.copyOf(at, n * 2);
+            at[n++] = loc;
+        }
+    }
+
+    // Where a pet's history lives: dated records by day, scratch and vitals in log order
+    // so the recent tail can be read from the end.
+    private static class PetIndex {
+        final TreeMap<Long, Locations> days = new TreeMap<>();
+        final Locations scratch = new Locations();
+        final Locations vitals = new Locations();
+    }
+
+    private interface Visitor {
+        void visit(byte type, int petId, ByteBuffer buf, int body, int start, int length);
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    private final int compactAfter;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final TreeMap<Integer, PetState> pets = new TreeMap<>();
+    private Map<Integer, PetIndex> index = new HashMap<>();
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_BODY);
+    private int nextSegment = 1;
+    private int sinceCompaction;
+    private int compactAt;
+    private boolean compacting;
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "segment-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    volatile Runnable compactionStep; // test hook, run after each record compaction copies
+
+    public static SegmentStore openDefault() {
+        String dir = System.getenv().getOrDefault("DATA_DIR", Paths.get(System.getProperty("user.home"), ".dawgtracker").toString());
+        try {
+            return new SegmentStore(Paths.get(dir), 16 << 20, 8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open embedded store at " + dir, e);
+        }
+    }
+
+    public SegmentStore(Path dir, int segmentSize, int compactAfter) throws IOException {
+        if (segmentSize < out.capacity() + HEADER) throw new IllegalArgumentException("Segment size too small for a full vitals record");
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.compactAfter = compactAfter;
+        this.compactAt = compactAfter;
+        Files.createDirectories(dir);
+
+        List<Integer> live = readManifest();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                int no = segmentNo(f);
+                if (no > 0 && !live.contains(no)) Files.delete(f);
+                nextSegment = Math.max(nextSegment, no + 1);
+            }
+        }
+        for (int no : live) {
+            Segment s = map(no);
+            segments.add(s);
+            int seg = segments.size() - 1;
+            s.end = scan(s, (type, petId, b, body, start, length) -> {
+                apply(type, petId, b, body, start, length);
+                index(index, seg, b, start);
+            });
+        }
+        if (segments.isEmpty()) roll();
+        if (pets.isEmpty()) createPet("Jojo");
+    }
+
+    // ---- Storage ----
+
+    @Override
+    public synchronized Map<Integer, String> listPets() {
+        Map<Integer, String> m = new LinkedHashMap<>();
+        pets.forEach((id, st) -> m.put(id, st.name));
+        return m;
+    }
+
+    @Override
+    public synchronized int createPet(String name) {
+        int id = pets.isEmpty() ? 1 : pets.lastKey() + 1;
+        encodePet(out, name);
+        append(PET, id);
+        PetState st = new PetState();
+        st.name = name;
+        pets.put(id, st);
+        return id;
+    }
+
+    @Override
+    public synchronized void loadSummary(PetProfile p) {
+        PetState st = pets.get(p.getId());
+        if (st == null) return;
+
+        long today = LocalDate.now().toEpochDay();
+        if (st.lastUpdated < today) {
+            st.hr = 0;
+            st.rr = 0;
+            st.act = 0;
+            writeStats(p.getId(), st, today);
+        }
+        p.restoreStats(st.hr, st.rr, st.act, st.scratch);
+        p.setTargets(st.tgtAct, st.optWt, st.tgtFood);
+        st.routines.forEach((name, v) -> {
+            Routine r = p.addRoutine(name, (int) v[1]);
+            r.setLast(LocalDate.ofEpochDay(v[0]));
+            r.setFreq((int) v[1]);
+        });
+    }
+
+    // The log is local and already mapped, so the scan runs inline.
+    @Override
+    public synchronized CompletableFuture<HistoryBatch> loadRecent(int petId, int vitalsCapacity) {
+        LocalDate now = LocalDate.now();
+        return CompletableFuture.completedFuture(readHistory(petId, now.minusDays(historyDays - 1), now.plusDays(1), vitalsCapacity));
+    }
+
+    @Override
+    public CompletableFuture<HistoryBatch> loadOlder(PetProfile p) {
+        LocalDate to = p.getHistoryFrom() != null ? p.getHistoryFrom() : LocalDate.now().plusDays(1);
+        return loadHistory(p.getId(), to.minusDays(historyDays), to);
+    }
+
+    @Override
+    public synchronized CompletableFuture<HistoryBatch> loadHistory(int petId, LocalDate from, LocalDate to) {
+        return CompletableFuture.completedFuture(readHistory(petId, from, to, 0));
+    }
+
+    @Override
+    public synchronized void saveStats(PetProfile p) {
+        PetState st = pets.get(p.getId());
+        if (st == null) return;
+        st.hr = p.getHr();
+        st.rr = p.getRr();
+        st.act = p.getAct();
+        st.scratch = p.getScratch();
+        long today = LocalDate.now().toEpochDay();
+        writeStats(p.getId(), st, today);
+
+        out.clear();
+        out.putLong(today).putInt(st.act);
+        append(ACTIVITY, p.getId());
+
+        out.clear();
+        out.putInt(st.scratch);
+        append(SCRATCH, p.getId());
+
+        addVitals(p.getId(), new long[]{System.currentTimeMillis()}, new int[]{st.hr}, new int[]{st.rr}, 1);
+    }
+
+    @Override
+    public synchronized void saveSettings(PetProfile p) {
+        PetState st = pets.get(p.getId());
+        if (st == null) return;
+        st.tgtAct = p.getTgtAct();
+        st.optWt = p.getOptWt();
+        st.tgtFood = p.getTgtFood();
+        writeSettings(p.getId(), st);
+        for (Routine r : p.getRoutines()) updateRoutine(p.getId(), r);
+    }
+
+    @Override
+    public synchronized void addMeal(int petId, LocalDate date, String name, double amount) {
+        out.clear();
+        out.putLong(date.toEpochDay()).putDouble(amount);
+        putString(out, name);
+        append(MEAL, petId);
+    }
+
+    @Override
+    public synchronized void addWeight(int petId, LocalDate date, double weight) {
+        out.clear();
+        out.putLong(date.toEpochDay()).putDouble(weight);
+        append(WEIGHT, petId);
+    }
+
+    @Override
+    public synchronized void addGroomingLog(int petId, LocalDate date, String description) {
+        out.clear();
+        out.putLong(date.toEpochDay());
+        putString(out, description);
+        append(GROOM, petId);
+    }
+
+    @Override
+    public synchronized void updateRoutine(int petId, Routine r) {
+        PetState st = pets.get(petId);
+        if (st == null) return;
+        st.routines.put(r.getName(), new long[]{r.getLast().toEpochDay(), r.getFreq()});
+        writeRoutine(petId, r.getName(), r.getLast().toEpochDay(), r.getFreq());
+    }
+
+    // A zero interval marks the routine as removed.
+    @Override
+    public synchronized void removeRoutine(int petId, String name) {
+        PetState st = pets.get(petId);
+        if (st == null || st.routines.remove(name) == null) return;
+        writeRoutine(petId, name, 0, 0);
+    }
+
+    @Override
+    public synchronized Map<Integer, List<Routine>> loadRoutines() {
+        Map<Integer, List<Routine>> all = new HashMap<>();
+        pets.forEach((id, st) -> st.routines.forEach((name, v) -> {
+            Routine r = new Routine(name, (int) v[1]);
+            r.setLast(LocalDate.ofEpochDay(v[0]));
+            all.computeIfAbsent(id, k -> new ArrayList<>()).add(r);
+        }));
+        return all;
+    }
+
+    @Override
+    public synchronized void addVitals(int petId, long[] millis, int[] hr, int[] rr, int count) {
+        for (int from = 0; from < count; from += MAX_VITALS) {
+            int n = Math.min(MAX_VITALS, count - from);
+            out.clear();
+            out.putInt(n);
+            for (int i = from; i < from + n; i++) out.putLong(millis[i]).putInt(hr[i]).putInt(rr[i]);
+            append(VITALS, petId);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        for (Segment s : segments) s.buf.force();
+    }
+
+    // Lets a running compaction finish first so its files are either live or gone.
+    @Override
+    public void close() {
+        awaitCompaction();
+        synchronized (this) {
+            flush();
+            for (Segment s : segments) {
+                try { s.ch.close(); } catch (IOException ignored) {}
+            }
+            segments.clear();
+        }
+        compactor.shutdown();
+    }
+
+    void awaitCompaction() {
+        CompletableFuture<Void> running;
+        synchronized (this) {
+            running = compaction;
+        }
+        running.join();
+    }
+
+    // ---- state records ----
+
+    private void writeStats(int petId, PetState st, long day) {
+        st.lastUpdated = day;
+        encodeStats(out, st);
+        append(STATS, petId);
+    }
+
+    private void writeSettings(int petId, PetState st) {
+        encodeSettings(out, st);
+        append(SETTINGS, petId);
+    }
+
+    private void writeRoutine(int petId, String name, long lastDay, long freq) {
+        encodeRoutine(out, name, lastDay, freq);
+        append(ROUTINE, petId);
+    }
+
+    private static void encodePet(ByteBuffer b, String name) {
+        b.clear();
+        putString(b, name);
+    }
+
+    private static void encodeStats(ByteBuffer b, PetState st) {
+        b.clear();
+        b.putInt(st.hr).putInt(st.rr).putInt(st.act).putInt(st.scratch).putLong(st.lastUpdated);
+    }
+
+    private static void encodeSettings(ByteBuffer b, PetState st) {
+        b.clear();
+        b.putInt(st.tgtAct).putDouble(st.optWt).putDouble(st.tgtFood);
+    }
+
+    private static void encodeRoutine(ByteBuffer b, String name, long lastDay, long freq) {
+        b.clear();
+        b.putLong(lastDay).putInt((int) freq);
+        putString(b, name);
+    }
+
+    // Rebuilds the small per-pet state; history records are left on disk.
+    private void apply(byte type, int petId, ByteBuffer b, int body, int start, int length) {
+        if (type == PET) {
+            PetState st = new PetState();
+            st.name = getString(b, body);
+            pets.put(petId, st);
+            return;
+        }
+        PetState st = pets.get(petId);
+        if (st == null) return;
+        switch (type) {
+            case STATS -> {
+                st.hr = b.getInt(body);
+                st.rr = b.getInt(body + 4);
+                st.act = b.getInt(body + 8);
+                st.scratch = b.getInt(body + 12);
+                st.lastUpdated = b.getLong(body + 16);
+            }
+            case SETTINGS -> {
+                st.tgtAct = b.getInt(body);
+                st.optWt = b.getDouble(body + 4);
+                st.tgtFood = b.getDouble(body + 12);
+            }
+            case ROUTINE -> {
+                String name = getString(b, body + 12);
+                int freq = b.getInt(body + 8);
+                if (freq == 0) st.routines.remove(name);
+                else st.routines.put(name, new long[]{b.getLong(body), freq});
+            }
+            default -> {}
+        }
+    }
+
+    // Reads only the pet's indexed records: the days in range, then the scratch and vitals tails.
+    private HistoryBatch readHistory(int id, LocalDate from, LocalDate to, int vitalsCapacity) {
+        boolean recent = vitalsCapacity > 0;
+        HistoryBatch batch = new HistoryBatch(from);
+        int[] scratch = new int[SCRATCH_REPLAY];
+        long[] ms = new long[Math.max(vitalsCapacity, 0)];
+        int[] hr = new int[ms.length], rr = new int[ms.length];
+        long[] counts = {0, 0};
+        Visitor v = (type, petId, b, body, start, length) -> {
+            switch (type) {
+                case MEAL, WEIGHT, GROOM, ACTIVITY -> {
+                    LocalDate d = LocalDate.ofEpochDay(b.getLong(body));
+                    if (type == MEAL) batch.meals.add(new HistoryRecord.Meal(d, getString(b, body + 16), b.getDouble(body + 8)));
+                    else if (type == WEIGHT) batch.weights.add(new HistoryRecord.Weight(d, b.getDouble(body + 8)));
+                    else if (type == GROOM) batch.grooming.add(new HistoryRecord.Grooming(d, getString(b, body + 8)));
+                    else batch.activity.add(new HistoryRecord.Activity(d, b.getInt(body + 8)));
+                }
+                case SCRATCH -> scratch[(int) (counts[0]++ % SCRATCH_REPLAY)] = b.getInt(body);
+                case VITALS -> {
+                    int n = b.getInt(body);
+                    for (int i = 0, o = body + 4; i < n; i++, o += 16) {
+                        int k = (int) (counts[1]++ % ms.length);
+                        ms[k] = b.getLong(o);
+                        hr[k] = b.getInt(o + 8);
+                        rr[k] = b.getInt(o + 12);
+                    }
+                }
+                default -> {}
+            }
+        };
+
+        PetIndex ix = index.get(id);
+        if (ix != null) {
+            for (Locations l : ix.days.subMap(from.toEpochDay(), to.toEpochDay()).values()) {
+                for (int i = 0; i < l.n; i++) visit(l.at[i], v);
+            }
+            if (recent) {
+                for (int i = Math.max(0, ix.scratch.n - SCRATCH_REPLAY); i < ix.scratch.n; i++) visit(ix.scratch.at[i], v);
+                // Step back over whole vitals records until they hold enough samples.
+                int first = ix.vitals.n;
+                for (long have = 0; first > 0 && have < ms.length; ) {
+                    long loc = ix.vitals.at[--first];
+                    have += segments.get((int) (loc >>> 32)).buf.getInt((int) loc + HEADER);
+                }
+                for (int i = first; i < ix.vitals.n; i++) visit(ix.vitals.at[i], v);
+            }
+        }
+        if (recent) {
+            // Both tails were kept in rings; unroll them oldest first.
+            int n = (int) Math.min(counts[0], SCRATCH_REPLAY);
+            batch.scratch = new int[n];
+            for (int i = 0; i < n; i++) batch.scratch[i] = scratch[(int) ((counts[0] - n + i) % SCRATCH_REPLAY)];
+
+            int c = (int) Math.min(counts[1], ms.length);
+            batch.vitalsMs = new long[c];
+            batch.vitalsHr = new int[c];
+            batch.vitalsRr = new int[c];
+            for (int i = 0; i < c; i++) {
+                int k = (int) ((counts[1] - c + i) % ms.length);
+                batch.vitalsMs[i] = ms[k];
+                batch.vitalsHr[i] = hr[k];
+                batch.vitalsRr[i] = rr[k];
+            }
+            batch.vitalsCount = c;
+        }
+        return batch;
+    }
+
+    // Adds the record at b[at], which lives in segment position seg.
+    private static void index(Map<Integer, PetIndex> index, int seg, ByteBuffer b, int at) {
+        byte type = b.get(at + 4);
+        long loc = (long) seg << 32 | at;
+        switch (type) {
+            case MEAL, WEIGHT, GROOM, ACTIVITY -> pet(index, b.getInt(at + 5)).days
+                    .computeIfAbsent(b.getLong(at + HEADER), k -> new Locations()).add(loc);
+            case SCRATCH -> pet(index, b.getInt(at + 5)).scratch.add(loc);
+            case VITALS -> pet(index, b.getInt(at + 5)).vitals.add(loc);
+            default -> {}
+        }
+    }
+
+    private static PetIndex pet(Map<Integer, PetIndex> index, int petId) {
+        return index.computeIfAbsent(petId, k -> new PetIndex());
+    }
+
+    private void visit(long loc, Visitor v) {
+        ByteBuffer b = segments.get((int) (loc >>> 32)).buf;
+        int at = (int) loc;
+        v.visit(b.get(at + 4), b.getInt(at + 5), b, at + HEADER, at, 4 + b.getInt(at));
+    }
+
+    // ---- segments ----
+
+    private void append(byte type, int petId) {
+        out.flip();
+        Segment s = segments.get(segments.size() - 1);
+        if (s.end + HEADER + out.remaining() > s.buf.capacity()) {
+            roll();
+            s = segments.get(segments.size() - 1);
+        }
+        int at = write(s, type, petId, out);
+        index(index, segments.size() - 1, s.buf, at);
+        if (sinceCompaction >= compactAt && compaction.isDone()) {
+            // The record is in; a failed compaction leaves the old generation live.
+            compaction = CompletableFuture.runAsync(() -> {
+                try {
+                    compact();
+                } catch (UncheckedIOException e) {
+                    e.printStackTrace();
+                }
+            }, compactor);
+        }
+    }
+
+    // Writes one record at s.end; the length goes last so a torn write reads as the end of the log.
+    private static int write(Segment s, byte type, int petId, ByteBuffer body) {
+        int at = s.end;
+        int length = 5 + body.remaining();
+        s.buf.put(at + 4, type);
+        s.buf.putInt(at + 5, petId);
+        s.buf.put(at + HEADER, body, body.position(), body.remaining());
+        s.buf.putInt(at, length);
+        s.end = at + 4 + length;
+        return at;
+    }
+
+    private void roll() {
+        try {
+            if (!segments.isEmpty()) segments.get(segments.size() - 1).buf.force();
+            segments.add(map(nextSegment++));
+            writeManifest();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        sinceCompaction++;
+    }
+
+    private synchronized int allocateSegment() {
+        return nextSegment++;
+    }
+
+    // Rewrites the log keeping pet state once and only the latest activity row per day.
+    // The active segment is sealed first and the rewrite reads only sealed segments, off the
+    // lock, so appends carry on into the tail meanwhile. The store lock is held again only to
+    // swap MANIFEST over to the new generation plus that tail; a crash before the swap reopens
+    // the old segments, after it the new ones, never a mix.
+    public void compact() {
+        List<Segment> sealed;
+        Map<Integer, PetState> state = new TreeMap<>();
+        synchronized (this) {
+            if (compacting || segments.isEmpty()) return;
+            roll();
+            compacting = true;
+            sinceCompaction = 0;
+            sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+            pets.forEach((id, st) -> state.put(id, st.copy()));
+        }
+
+        Generation gen = new Generation();
+        try {
+            rewrite(sealed, state, gen);
+            synchronized (this) {
+                swap(sealed, gen);
+            }
+        } catch (IOException | RuntimeException e) {
+            // MANIFEST still names the old generation; drop the partial new one.
+            gen.discard(e);
+            synchronized (this) {
+                compacting = false;
+            }
+            if (e instanceof RuntimeException r) throw r;
+            throw new UncheckedIOException((IOException) e);
+        }
+
+        for (Segment s : sealed) {
+            try {
+                s.ch.close();
+                Files.deleteIfExists(s.path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Runs off the lock: sealed segments are no longer written, and state is a copy.
+    private void rewrite(List<Segment> sealed, Map<Integer, PetState> state, Generation gen) {
+        Map<Long, Long> lastActivity = new HashMap<>();
+        long[] seq = {0};
+        for (Segment s : sealed) {
+            scan(s, (type, petId, b, body, start, length) -> {
+                if (type == ACTIVITY) lastActivity.put(((long) petId << 32) | b.getLong(body), seq[0]);
+                seq[0]++;
+            });
+        }
+
+        state.forEach((id, st) -> {
+            encodePet(gen.out, st.name);
+            gen.put(PET, id);
+            if (st.lastUpdated != Long.MIN_VALUE) {
+                encodeStats(gen.out, st);
+                gen.put(STATS, id);
+            }
+            encodeSettings(gen.out, st);
+            gen.put(SETTINGS, id);
+            st.routines.forEach((name, v) -> {
+                encodeRoutine(gen.out, name, v[0], v[1]);
+                gen.put(ROUTINE, id);
+            });
+        });
+
+        seq[0] = 0;
+        for (Segment s : sealed) {
+            scan(s, (type, petId, b, body, start, length) -> {
+                long n = seq[0]++;
+                boolean keep = switch (type) {
+                    case MEAL, WEIGHT, GROOM, SCRATCH, VITALS -> true;
+                    case ACTIVITY -> lastActivity.get(((long) petId << 32) | b.getLong(body)) == n;
+                    default -> false;
+                };
+                if (keep) {
+                    gen.copy(b, start, length);
+                    Runnable step = compactionStep;
+                    if (step != null) step.run();
+                }
+            });
+        }
+        for (Segment s : gen.segments) s.buf.force();
+    }
+
+    // Live becomes the new generation followed by whatever was appended since the seal;
+    // the tail's index entries move to their new segment positions.
+    private void swap(List<Segment> sealed, Generation gen) throws IOException {
+        List<Segment> old = new ArrayList<>(segments);
+        List<Segment> tail = old.subList(sealed.size(), old.size());
+        int shift = gen.segments.size() - sealed.size();
+        index.forEach((id, ix) -> {
+            PetIndex to = pet(gen.index, id);
+            ix.days.forEach((day, l) -> carry(l, sealed.size(), shift, () -> to.days.computeIfAbsent(day, k -> new Locations())));
+            carry(ix.scratch, sealed.size(), shift, () -> to.scratch);
+            carry(ix.vitals, sealed.size(), shift, () -> to.vitals);
+        });
+
+        segments.clear();
+        segments.addAll(gen.segments);
+        segments.addAll(tail);
+        try {
+            writeManifest();
+        } catch (IOException e) {
+            segments.clear();
+            segments.addAll(old);
+            throw e;
+        }
+        index = gen.index;
+        // Wait for the log to grow by its compacted size again so rewrites stay amortised.
+        compactAt = Math.max(compactAfter, gen.segments.size());
+        compacting = false;
+    }
+
+    private static void carry(Locations from, int firstTail, int shift, Supplier<Locations> to) {
+        for (int i = 0; i < from.n; i++) {
+            long loc = from.at[i];
+            if ((int) (loc >>> 32) >= firstTail) to.get().add(loc + ((long) shift << 32));
+        }
+    }
+
+    // Segments of a generation being written by compact(); MANIFEST does not name them yet.
+    private class Generation {
+        final List<Segment> segments = new ArrayList<>();
+        final Map<Integer, PetIndex> index = new HashMap<>();
+        final ByteBuffer out = ByteBuffer.allocate(MAX_BODY);
+
+        void put(byte type, int petId) {
+            out.flip();
+            Segment s = room(HEADER + out.remaining());
+            index(index, segments.size() - 1, s.buf, write(s, type, petId, out));
+        }
+
+        void copy(ByteBuffer src, int start, int length) {
+            Segment s = room(length);
+            s.buf.put(s.end, src, start, length);
+            index(index, segments.size() - 1, s.buf, s.end);
+            s.end += length;
+        }
+
+        private Segment room(int length) {
+            Segment s = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (s != null && s.end + length <= s.buf.capacity()) return s;
+            try {
+                if (s != null) s.buf.force();
+                s = map(allocateSegment());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments.add(s);
+            return s;
+        }
+
+        void discard(Exception e) {
+            for (Segment s : segments) {
+                try {
+                    s.ch.close();
+                    Files.deleteIfExists(s.path);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+        }
+    }
+
+    private Segment map(int no) throws IOException {
+        Path path = dir.resolve(String.format("seg-%06d.log", no));
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(segmentSize, ch.size());
+        return new Segment(no, path, ch, ch.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    private int scan(Segment s, Visitor v) {
+        MappedByteBuffer b = s.buf;
+        int pos = 0, cap = b.capacity();
+        while (pos + HEADER <= cap) {
+            int length = b.getInt(pos);
+            if (length < 5 || pos + 4 + length > cap) break;
+            v.visit(b.get(pos + 4), b.getInt(pos + 5), b, pos + HEADER, pos, 4 + length);
+            pos += 4 + length;
+        }
+        return pos;
+    }
+
+    private List<Integer> readManifest() throws IOException {
+        List<Integer> live = new ArrayList<>();
+        Path manifest = dir.resolve("MANIFEST");
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest)) {
+                if (!line.isBlank()) live.add(Integer.parseInt(line.trim()));
+            }
+        }
+        return live;
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Segment s : segments) sb.append(s.no).append('\n');
+        Path tmp = dir.resolve("MANIFEST.tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve("MANIFEST"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int segmentNo(Path f) {
+        String n = f.getFileName().toString();
+        if (!n.startsWith("seg-") || !n.endsWith(".log")) return -1;
+        return Integer.parseInt(n.substring(4, n.length() - 4));
+    }
+
+    public synchronized int segmentCount() { return segments.size(); }
+
+    // ---- encoding ----
+
+    // UTF-8 byte length, then the bytes; -1 for null. Text past Short.MAX_VALUE bytes is cut at
+    // the last whole code point so it still decodes.
+    private static void putString(ByteBuffer b, String s) {
+        if (s == null) {
+            b.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int n = bytes.length;
+        if (n > Short.MAX_VALUE) {
+            n = Short.MAX_VALUE;
+            while ((bytes[n] & 0xC0) == 0x80) n--;
+        }
+        b.putShort((short) n).put(bytes, 0, n);
+    }
+
+    private static String getString(ByteBuffer b, int at) {
+        int n = b.getShort(at);
+        if (n < 0) return null;
+        byte[] bytes = new byte[n];
+        b.get(at + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
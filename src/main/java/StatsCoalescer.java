@@ -0,0 +1,118 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Merges stats saves per pet over a short window. Only the latest stats and each day's latest
+// activity survive; scratch and vitals samples are kept in full, since both are histories.
+// The first save in a quiet period starts the window and everything pending goes out together.
+public class StatsCoalescer implements AutoCloseable {
+
+    public static final class Pending {
+        final int petId;
+        int hr, rr, act, scratch;
+        final Map<LocalDate, Integer> activity = new LinkedHashMap<>();
+        int[] scratches = new int[4];
+        long[] vitalsMs = new long[4];
+        int[] vitalsHr = new int[4];
+        int[] vitalsRr = new int[4];
+        int samples;
+        int merged;
+
+        Pending(int petId) {
+            this.petId = petId;
+        }
+
+        private void add(LocalDate day, long millis, int hr, int rr, int act, int scratch) {
+            this.hr = hr;
+            this.rr = rr;
+            this.act = act;
+            this.scratch = scratch;
+            activity.put(day, act);
+            if (samples == scratches.length) {
+                int n = samples * 2;
+                scratches = Arrays.copyOf(scratches, n);
+                vitalsMs = Arrays.copyOf(vitalsMs, n);
+                vitalsHr = Arrays.copyOf(vitalsHr, n);
+                vitalsRr = Arrays.copyOf(vitalsRr, n);
+            }
+            scratches[samples] = scratch;
+            vitalsMs[samples] = millis;
+            vitalsHr[samples] = hr;
+            vitalsRr[samples] = rr;
+            samples++;
+            merged++;
+        }
+    }
+
+    private final long windowMs;
+    private final Consumer<List<Pending>> sink;
+    private final Object flushLock = new Object();
+    private final Map<Integer, Pending> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService timer;
+    private boolean scheduled;
+
+    // A zero window hands every save to the sink straight away.
+    public StatsCoalescer(long windowMs, Consumer<List<Pending>> sink) {
+        this.windowMs = windowMs;
+        this.sink = sink;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stats-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // After close, saves are written straight through.
+    public void update(int petId, LocalDate day, long millis, int hr, int rr, int act, int scratch) {
+        boolean now;
+        synchronized (this) {
+            pending.computeIfAbsent(petId, Pending::new).add(day, millis, hr, rr, act, scratch);
+            if (scheduled) return;
+            now = windowMs <= 0 || timer.isShutdown();
+            scheduled = !now;
+        }
+        if (!now) {
+            try {
+                timer.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                // closed in the meantime
+            }
+        }
+        flush();
+    }
+
+    public synchronized int pending() { return pending.size(); }
+
+    // Batches reach the sink in the order they were taken, so a pet's stats never go backwards.
+    public void flush() {
+        synchronized (flushLock) {
+            List<Pending> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                scheduled = false;
+            }
+            if (batch.isEmpty()) return;
+            try {
+                sink.accept(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        flush();
+    }
+}
@@ -0,0 +1,84 @@
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface Storage extends AutoCloseable {
+
+    Map<Integer, String> listPets();
+
+    int createPet(String name);
+
+    // Stats, targets and routines only: enough for the first paint.
+    void loadSummary(PetProfile p);
+
+    // The recent history window plus scratch and vitals replay; apply the result on the owning thread.
+    // Call it before the profile takes edits: rows written after it returns are not in the batch.
+    CompletableFuture<HistoryBatch> loadRecent(int petId, int vitalsCapacity);
+
+    default void loadProfile(PetProfile p) {
+        loadSummary(p);
+        loadRecent(p.getId(), p.getVitals().capacity()).join().applyTo(p);
+    }
+
+    // The window before the profile's resident history; apply the result on the owning thread.
+    CompletableFuture<HistoryBatch> loadOlder(PetProfile p);
+
+    // History in [from, to) without scratch or vitals; apply the result on the owning thread.
+    CompletableFuture<HistoryBatch> loadHistory(int petId, LocalDate from, LocalDate to);
+
+    void saveStats(PetProfile p);
+
+    void saveSettings(PetProfile p);
+
+    void addMeal(int petId, LocalDate date, String name, double amount);
+
+    void addWeight(int petId, LocalDate date, double weight);
+
+    void addGroomingLog(int petId, LocalDate date, String description);
+
+    // A device post's worth of rows; backends may write them as a single batch.
+    default void addMeals(int petId, List<HistoryRecord.Meal> meals) {
+        for (HistoryRecord.Meal m : meals) addMeal(petId, m.date(), m.name(), m.amount());
+    }
+
+    default void addWeights(int petId, List<HistoryRecord.Weight> weights) {
+        for (HistoryRecord.Weight w : weights) addWeight(petId, w.date(), w.weight());
+    }
+
+    void updateRoutine(int petId, Routine r);
+
+    void removeRoutine(int petId, String name);
+
+    // Every stored routine keyed by pet, so reminders can be scheduled before the pets are opened.
+    Map<Integer, List<Routine>> loadRoutines();
+
+    void addVitals(int petId, long[] millis, int[] hr, int[] rr, int count);
+
+    // Persists a cache of the loaded profile for a faster next start. The profile is copied on the
+    // calling thread, which must own it; the returned save may run anywhere. Null when there is
+    // nothing to save or the backend keeps no snapshots.
+    default Runnable snapshot(PetProfile p) { return null; }
+
+    default void saveSnapshot(PetProfile p) {
+        Runnable save = snapshot(p);
+        if (save != null) save.run();
+    }
+
+    void flush();
+
+    @Override
+    void close();
+
+    // STORAGE=embedded forces the local segment log; otherwise Postgres is used while it is reachable.
+    static Storage open() {
+        String mode = System.getenv().getOrDefault("STORAGE", "postgres");
+        if (!mode.equalsIgnoreCase("embedded")) {
+            DatabaseManager db = new DatabaseManager();
+            if (db.isAvailable()) return db;
+            db.close();
+            System.err.println("Postgres unavailable, using embedded store");
+        }
+        return SegmentStore.openDefault();
+    }
+}
@@ -0,0 +1,57 @@
+public class VitalsBuffer {
+
+    public record Summary(int count, int minHr, double avgHr, int maxHr, int minRr, double avgRr, int maxRr) {}
+
+    private final long[] ts;
+    private final int[] hr;
+    private final int[] rr;
+    private int head;
+    private int size;
+
+    public VitalsBuffer(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        ts = new long[capacity];
+        hr = new int[capacity];
+        rr = new int[capacity];
+    }
+
+    public synchronized void add(long millis, int heartRate, int respRate) {
+        ts[head] = millis;
+        hr[head] = heartRate;
+        rr[head] = respRate;
+        head = (head + 1) % ts.length;
+        if (size < ts.length) size++;
+    }
+
+    public synchronized void addAll(long[] millis, int[] heartRates, int[] respRates, int count) {
+        for (int i = 0; i < count; i++) add(millis[i], heartRates[i], respRates[i]);
+    }
+
+    public synchronized int size() { return size; }
+
+    public int capacity() { return ts.length; }
+
+    // Summarises samples at or after sinceMillis, walking back from the newest.
+    public synchronized Summary summarize(long sinceMillis) {
+        int n = 0;
+        int minHr = Integer.MAX_VALUE, maxHr = Integer.MIN_VALUE, minRr = Integer.MAX_VALUE, maxRr = Integer.MIN_VALUE;
+        long sumHr = 0, sumRr = 0;
+        for (int k = 0; k < size; k++) {
+            int i = Math.floorMod(head - 1 - k, ts.length);
+            if (ts[i] < sinceMillis) break;
+            minHr = Math.min(minHr, hr[i]);
+            maxHr = Math.max(maxHr, hr[i]);
+            minRr = Math.min(minRr, rr[i]);
+            maxRr = Math.max(maxRr, rr[i]);
+            sumHr += hr[i];
+            sumRr += rr[i];
+            n++;
+        }
+        if (n == 0) return new Summary(0, 0, 0, 0, 0, 0, 0);
+        return new Summary(n, minHr, (double) sumHr / n, maxHr, minRr, (double) sumRr / n, maxRr);
+    }
+
+    public synchronized long latestMillis() {
+        return size == 0 ? Long.MIN_VALUE : ts[Math.floorMod(head - 1, ts.length)];
+    }
+}
@@ -0,0 +1,151 @@
+import java.time.LocalDate;
+
+// Rolling least-squares slope and mean over the weights of the last windowDays days.
+// Samples arriving in date order cost O(1): running sums are adjusted as samples enter and
+// leave the window. Older samples (back-filled history) need a rebuild from the full series.
+public class WeightTrend {
+
+    public enum Direction { STABLE, GAINING, LOSING }
+
+    private final int windowDays;
+    private final int minSamples;
+    private final int minSpanDays;
+    private final double weeklyPct;
+
+    // Ring of samples in the window, oldest at head.
+    private int[] days = new int[16];
+    private double[] values = new double[16];
+    private int head;
+    private int size;
+
+    // Sums over x = day - origin, kept small so the products stay exact for years of data.
+    private int origin;
+    private double sx, sy, sxx, sxy;
+    private int evictions;
+
+    public WeightTrend() {
+        this(30, 3, 14, 1.0);
+    }
+
+    // A trend is sustained once minSamples span minSpanDays and move weeklyPct of the mean per week.
+    public WeightTrend(int windowDays, int minSamples, int minSpanDays, double weeklyPct) {
+        if (windowDays <= 0) throw new IllegalArgumentException("Window must be positive");
+        this.windowDays = windowDays;
+        this.minSamples = Math.max(minSamples, 2);
+        this.minSpanDays = minSpanDays;
+        this.weeklyPct = weeklyPct;
+    }
+
+    // Returns false, leaving the trend untouched, for a sample older than the newest one.
+    public boolean add(LocalDate date, double weight) {
+        int day = (int) date.toEpochDay();
+        if (size > 0 && day < newestDay()) return false;
+        if (size == 0) origin = day;
+        while (size > 0 && days[head] <= day - windowDays) evict();
+        if (size == days.length) grow();
+
+        int i = (head + size) % days.length;
+        days[i] = day;
+        values[i] = weight;
+        size++;
+        accumulate(day, weight, 1);
+        return true;
+    }
+
+    // One pass over a date-ordered series, e.g. after loading history.
+    public void rebuild(DaySeries.View series) {
+        reset();
+        int from = series.size();
+        if (from == 0) return;
+        int last = series.epochDay(from - 1);
+        while (from > 0 && series.epochDay(from - 1) > last - windowDays) from--;
+        for (int i = from; i < series.size(); i++) add(series.date(i), series.value(i));
+    }
+
+    public void reset() {
+        head = 0;
+        size = 0;
+        sx = sy = sxx = sxy = 0;
+        evictions = 0;
+    }
+
+    public int size() { return size; }
+
+    public int windowDays() { return windowDays; }
+
+    public double mean() {
+        return size == 0 ? Double.NaN : sy / size;
+    }
+
+    // Change per day; NaN until two different days are in the window.
+    public double slope() {
+        double d = size * sxx - sx * sx;
+        return size < 2 || d <= 0 ? Double.NaN : (size * sxy - sx * sy) / d;
+    }
+
+    public double weeklyChange() {
+        return slope() * 7;
+    }
+
+    // Percentage of the window mean above (positive) or below the target.
+    public double deviationPct(double target) {
+        return size == 0 || target <= 0 ? Double.NaN : (mean() - target) / target * 100;
+    }
+
+    public Direction direction() {
+        if (size < minSamples || newestDay() - days[head] < minSpanDays) return Direction.STABLE;
+        double weekly = weeklyChange();
+        if (Double.isNaN(weekly) || Math.abs(weekly) < mean() * weeklyPct / 100) return Direction.STABLE;
+        return weekly > 0 ? Direction.GAINING : Direction.LOSING;
+    }
+
+    // A sustained trend that moves the weight further from the target.
+    public boolean isAlerting(double target) {
+        Direction d = direction();
+        double dev = deviationPct(target);
+        return d == Direction.GAINING && dev > 0 || d == Direction.LOSING && dev < 0;
+    }
+
+    private int newestDay() {
+        return days[(head + size - 1) % days.length];
+    }
+
+    private void evict() {
+        accumulate(days[head], values[head], -1);
+        head = (head + 1) % days.length;
+        size--;
+        // Removing values leaves rounding behind; recompute now and then to keep it bounded.
+        if (++evictions >= 1024) resum();
+    }
+
+    private void accumulate(int day, double weight, int sign) {
+        double x = day - origin;
+        sx += sign * x;
+        sy += sign * weight;
+        sxx += sign * x * x;
+        sxy += sign * x * weight;
+    }
+
+    private void resum() {
+        evictions = 0;
+        sx = sy = sxx = sxy = 0;
+        if (size > 0) origin = days[head];
+        for (int k = 0; k < size; k++) {
+            int i = (head + k) % days.length;
+            accumulate(days[i], values[i], 1);
+        }
+    }
+
+    private void grow() {
+        int[] d = new int[days.length * 2];
+        double[] v = new double[d.length];
+        for (int k = 0; k < size; k++) {
+            int i = (head + k) % days.length;
+            d[k] = days[i];
+            v[k] = values[i];
+        }
+        days = d;
+        values = v;
+        head = 0;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindQueue<T> implements AutoCloseable {
+
+    public interface BatchWriter<T> {
+        void write(List<T> batch) throws Exception;
+    }
+
+    private final BatchWriter<T> sink;
+    private final int maxBatch;
+    private final BlockingQueue<T> queue;
+    private final Thread writer;
+
+    private final Object lock = new Object();
+    private long submitted;
+    private long completed;
+    private volatile boolean closed;
+
+    public WriteBehindQueue(String name, BatchWriter<T> sink, int capacity, int maxBatch) {
+        if (maxBatch <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        this.sink = sink;
+        this.maxBatch = maxBatch;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, name);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void submit(T item) {
+        if (closed) throw new IllegalStateException("Queue closed");
+        synchronized (lock) { submitted++; }
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markDone(1);
+            throw new IllegalStateException("Interrupted while queueing write", e);
+        }
+    }
+
+    public int pending() {
+        synchronized (lock) { return (int) (submitted - completed); }
+    }
+
+    public void flush() {
+        try {
+            awaitFlush(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean awaitFlush(long timeoutMs) throws InterruptedException {
+        long deadline = timeoutMs == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            long target = submitted;
+            while (completed < target) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) return false;
+                lock.wait(Math.min(left, 1000));
+            }
+            return true;
+        }
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                sink.write(batch);
+            } catch (InterruptedException ignored) {
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                markDone(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void markDone(int n) {
+        if (n == 0) return;
+        synchronized (lock) {
+            completed += n;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionPoolTest {
+
+    static Connection fakeConnection(AtomicInteger prepared, AtomicBoolean valid) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "prepareStatement" -> {
+                        prepared.incrementAndGet();
+                        yield Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                new Class<?>[]{PreparedStatement.class},
+                                (p, pm, pa) -> pm.getName().equals("isClosed") ? false : null);
+                    }
+                    case "isValid" -> valid.get();
+                    case "isClosed" -> closed.get();
+                    case "getAutoCommit" -> true;
+                    case "close" -> { closed.set(true); yield null; }
+                    default -> null;
+                });
+    }
+
+    @Test
+    public void testReusesConnection() throws SQLException {
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger prepared = new AtomicInteger();
+        ConnectionPool pool = new ConnectionPool(() -> {
+            opened.incrementAndGet();
+            return fakeConnection(prepared, new AtomicBoolean(true));
+        }, 2);
+
+        for (int i = 0; i < 5; i++) {
+            try (ConnectionPool.PooledConnection pc = pool.borrow()) {
+                pc.prepare("SELECT 1");
+            }
+        }
+
+        assertEquals(1, opened.get());
+        assertEquals(1, prepared.get());
+        assertEquals(1, pool.idleCount());
+    }
+
+    @Test
+    public void testBounded() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(() -> fakeConnection(new AtomicInteger(), new AtomicBoolean(true)),
+                1, 300_000, 30_000, 50);
+
+        try (ConnectionPool.PooledConnection pc = pool.borrow()) {
+            assertNotNull(pc.conn());
+            assertEquals(0, pool.available());
+            assertThrows(SQLException.class, pool::borrow);
+        }
+        assertEquals(1, pool.available());
+    }
+
+    @Test
+    public void testValidationDropsDeadConnection() throws SQLException {
+        AtomicInteger opened = new AtomicInteger();
+        AtomicBoolean valid = new AtomicBoolean(true);
+        ConnectionPool pool = new ConnectionPool(() -> {
+            opened.incrementAndGet();
+            return fakeConnection(new AtomicInteger(), valid);
+        }, 2, 300_000, 0, 1000);
+
+        pool.borrow().close();
+        valid.set(false);
+        pool.borrow().close();
+
+        assertEquals(2, opened.get());
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        AtomicInteger opened = new AtomicInteger();
+        ConnectionPool pool = new ConnectionPool(() -> {
+            opened.incrementAndGet();
+            return fakeConnection(new AtomicInteger(), new AtomicBoolean(true));
+        }, 2, 0, 30_000, 1000);
+
+        pool.borrow().close();
+        Thread.sleep(5);
+        pool.borrow().close();
+
+        assertEquals(2, opened.get());
+    }
+}
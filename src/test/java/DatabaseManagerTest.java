@@ -1,13 +1,144 @@
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
 public class DatabaseManagerTest {
     @Test
     public void testInstantiation() {
         // This test merely checks if the class can be instantiated without throwing unchecked exceptions.
         // The constructor catches checked exceptions (ClassNotFoundException, SQLException), so this should pass
         // even without a running database, logging the error to stderr.
-        DatabaseManager db = new DatabaseManager();
-        assertNotNull(db);
+        try (DatabaseManager db = new DatabaseManager()) {
+            assertNotNull(db);
+        }
+    }
+
+    @Test
+    public void testBulkImportRejectsEmptyChunks() {
+        try (DatabaseManager db = new DatabaseManager()) {
+            assertThrows(IllegalArgumentException.class, () -> db.bulkImport(1, Stream.empty(), 0));
+        }
+    }
+
+    @Test
+    public void testImportResultRate() {
+        DatabaseManager.ImportResult r = new DatabaseManager.ImportResult(5000, 2_000_000_000L);
+        assertEquals(2500.0, r.rowsPerSec());
+        assertTrue(r.toString().contains("2500 rows/sec"));
+    }
+
+    @Test
+    public void testResolutionFitsRange() {
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        assertEquals(DatabaseManager.Resolution.DAY, DatabaseManager.resolutionFor(from, from.plusDays(59), 60));
+        assertEquals(DatabaseManager.Resolution.WEEK, DatabaseManager.resolutionFor(from, from.plusDays(180), 60));
+        assertEquals(DatabaseManager.Resolution.MONTH, DatabaseManager.resolutionFor(from, from.plusYears(3), 60));
+    }
+
+    @Test
+    public void testActivityPointRatios() {
+        DatabaseManager.ActivityPoint p = new DatabaseManager.ActivityPoint(LocalDate.of(2024, 1, 1), DatabaseManager.Resolution.WEEK, 350, 7, 5);
+        assertEquals(50.0, p.mean());
+        assertEquals(5 / 7.0, p.goalRatio());
+    }
+
+    // The factory fails, so every borrow reaches it and shows which thread asked for a connection.
+    @Test
+    public void testNewNamesAreResolvedOnTheWriter() {
+        List<Thread> borrowers = new CopyOnWriteArrayList<>();
+        ConnectionPool pool = new ConnectionPool(() -> {
+            borrowers.add(Thread.currentThread());
+            throw new SQLException("offline");
+        }, 1, 300_000, 0, 50);
+        try (DatabaseManager db = new DatabaseManager(pool)) {
+            borrowers.clear();
+            db.addMeal(1, LocalDate.now(), "Brand New Food", 1.0);
+            db.addGroomingLog(1, LocalDate.now(), "Brand New Trim");
+            db.addMeals(1, List.of(new HistoryRecord.Meal(LocalDate.now(), "Another Food", 2.0)));
+            assertFalse(borrowers.contains(Thread.currentThread()));
+        }
+    }
+
+    // A meal saved while the history is loading is already on the profile, so the load must stop
+    // at the ids that existed when loadRecent was called. The fake database reports one more row
+    // per table every time the ids are read, as if the profile kept writing.
+    @Test
+    public void testRecentHistoryStopsAtIdsReadOnCall() {
+        AtomicBoolean online = new AtomicBoolean();
+        AtomicLong rows = new AtomicLong(10);
+        Map<String, Long> bounds = new ConcurrentHashMap<>();
+        ConnectionPool pool = new ConnectionPool(() -> {
+            if (!online.get()) throw new SQLException("offline");
+            return fakeConnection(rows, bounds);
+        }, 2, 300_000, 0, 1000);
+        try (DatabaseManager db = new DatabaseManager(pool)) {
+            online.set(true);
+            var load = db.loadRecent(1, 0);
+            rows.addAndGet(5);
+            load.join();
+            assertEquals(11L, bounds.get("meals"));
+            assertEquals(12L, bounds.get("weights"));
+            assertEquals(13L, bounds.get("grooming_logs"));
+        }
+    }
+
+    // Answers the version/max-id query from rows and records the upper id bound of each history query.
+    private static Connection fakeConnection(AtomicLong rows, Map<String, Long> bounds) {
+        return proxy(Connection.class, (m, args) -> switch (m) {
+            case "prepareStatement" -> fakeStatement((String) args[0], rows, bounds);
+            case "isValid" -> true;
+            default -> null;
+        });
+    }
+
+    private static PreparedStatement fakeStatement(String sql, AtomicLong rows, Map<String, Long> bounds) {
+        long[] stamp = new long[4];
+        return proxy(PreparedStatement.class, (m, args) -> switch (m) {
+            case "setLong" -> {
+                if ((int) args[0] == 5) bounds.put(sql.split(" FROM ")[1].split(" ")[0], (long) args[1]);
+                yield null;
+            }
+            case "executeQuery" -> {
+                boolean isStamp = sql.startsWith("SELECT data_version");
+                if (isStamp) {
+                    long n = rows.getAndAdd(3);
+                    for (int i = 0; i < 4; i++) stamp[i] = n + i;
+                }
+                AtomicBoolean more = new AtomicBoolean(isStamp);
+                yield proxy(ResultSet.class, (rm, rargs) -> switch (rm) {
+                    case "next" -> more.getAndSet(false);
+                    case "getLong" -> stamp[(int) rargs[0] - 1];
+                    default -> null;
+                });
+            }
+            default -> null;
+        });
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    // Unhandled methods return null, or zero/false for primitives.
+    private static <T> T proxy(Class<T> type, Handler h) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, m, args) -> {
+            Object r = h.invoke(m.getName(), args);
+            if (r != null || !m.getReturnType().isPrimitive() || m.getReturnType() == void.class) return r;
+            if (m.getReturnType() == boolean.class) return false;
+            return m.getReturnType() == long.class ? (Object) 0L : (Object) 0;
+        }));
     }
 }
@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+
+public class DaySeriesTest {
+
+    private static final LocalDate D1 = LocalDate.of(2023, 10, 1);
+
+    @Test
+    public void testKeepsSortedOrder() {
+        DaySeries s = new DaySeries(2);
+        s.add(D1.plusDays(2), 3);
+        s.add(D1, 1);
+        s.add(D1.plusDays(1), 2);
+
+        DaySeries.View v = s.all();
+        assertEquals(3, v.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(D1.plusDays(i), v.date(i));
+            assertEquals(i + 1, v.value(i));
+        }
+    }
+
+    @Test
+    public void testPutReplacesDay() {
+        DaySeries s = new DaySeries();
+        s.put(D1, 30);
+        s.put(D1, 45);
+        s.put(D1.plusDays(1), 10);
+
+        assertEquals(2, s.size());
+        assertEquals(45, s.get(D1));
+        assertTrue(s.contains(D1.plusDays(1)));
+        assertFalse(s.contains(D1.minusDays(1)));
+        assertTrue(Double.isNaN(s.get(D1.minusDays(1))));
+    }
+
+    @Test
+    public void testAddKeepsSameDaySamples() {
+        DaySeries s = new DaySeries();
+        s.add(D1, 6.0);
+        s.add(D1, 6.2);
+
+        assertEquals(2, s.size());
+        assertEquals(6.2, s.get(D1));
+    }
+
+    @Test
+    public void testSliceStats() {
+        DaySeries s = new DaySeries();
+        for (int i = 0; i < 10; i++) s.add(D1.plusDays(i), i);
+
+        DaySeries.View v = s.slice(D1.plusDays(2), D1.plusDays(5));
+        assertEquals(4, v.size());
+        assertEquals(2, v.min());
+        assertEquals(5, v.max());
+        assertEquals(3.5, v.mean());
+        assertEquals(14, v.sum());
+
+        DaySeries.View empty = s.slice(D1.plusDays(20), D1.plusDays(30));
+        assertTrue(empty.isEmpty());
+        assertTrue(Double.isNaN(empty.mean()));
+        assertTrue(s.slice(D1.plusDays(5), D1).isEmpty());
+    }
+
+    @Test
+    public void testRemoveBeforeShrinks() {
+        DaySeries s = new DaySeries(4);
+        for (int i = 0; i < 100; i++) s.put(D1.plusDays(i), i);
+        s.removeBefore(D1.plusDays(95));
+
+        DaySeries.View v = s.all();
+        assertEquals(5, v.size());
+        assertEquals(D1.plusDays(95), v.date(0));
+        assertEquals(99, v.value(4));
+        s.removeBefore(D1);
+        assertEquals(5, s.size());
+        s.put(D1.plusDays(100), 100);
+        assertEquals(100, s.get(D1.plusDays(100)));
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+public class ExportWriterTest {
+
+    private static final String[] names = {"pet_id", "date", "name", "amount"};
+    private static final ExportWriter.Type[] types = {ExportWriter.Type.INT, ExportWriter.Type.DATE, ExportWriter.Type.TEXT, ExportWriter.Type.DOUBLE};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testCsvQuotesAndFormats() throws Exception {
+        Path file = dir.resolve("meals.csv");
+        try (ExportWriter w = ExportWriter.open(ExportWriter.Format.CSV, file, names, types)) {
+            w.putInt(-12);
+            w.putLong(LocalDate.of(2024, 3, 9).toEpochDay());
+            w.putText("Kibble, \"large\"");
+            w.putDouble(1.5);
+            w.endRow();
+            w.putInt(7);
+            w.putLong(0);
+            w.putText(null);
+            w.putDouble(2);
+            w.endRow();
+            assertEquals(2, w.rows());
+        }
+        assertEquals("pet_id,date,name,amount\n-12,2024-03-09,\"Kibble, \"\"large\"\"\",1.5\n7,1970-01-01,,2\n",
+                Files.readString(file));
+    }
+
+    @Test
+    public void testShortRowRejected() throws Exception {
+        try (ExportWriter w = ExportWriter.open(ExportWriter.Format.CSV, dir.resolve("x.csv"), names, types)) {
+            w.putInt(1);
+            assertThrows(IllegalStateException.class, w::endRow);
+        }
+    }
+
+    @Test
+    public void testColumnarBlocks() throws Exception {
+        int rows = ExportWriter.BLOCK + 10;
+        Path file = dir.resolve("meals.dwgc");
+        try (ExportWriter w = ExportWriter.open(ExportWriter.Format.COLUMNAR, file, names, types)) {
+            for (int i = 0; i < rows; i++) {
+                w.putInt(i);
+                w.putLong(19000 + i);
+                w.putText(i % 2 == 0 ? "m" + i : null);
+                w.putDouble(i / 2.0);
+                w.endRow();
+            }
+        }
+
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(ExportWriter.MAGIC, b.getInt());
+        assertEquals(ExportWriter.FORMAT, b.getShort());
+        assertEquals(4, b.getShort());
+        for (int c = 0; c < 4; c++) {
+            assertEquals(types[c].ordinal(), b.get());
+            byte[] name = new byte[b.getShort()];
+            b.get(name);
+            assertEquals(names[c], new String(name, StandardCharsets.UTF_8));
+        }
+
+        int seen = 0;
+        for (int n = b.getInt(); n > 0; n = b.getInt()) {
+            for (int i = 0; i < n; i++) assertEquals(seen + i, b.getInt());
+            for (int i = 0; i < n; i++) assertEquals(19000 + seen + i, b.getInt());
+            for (int i = 0; i < n; i++) {
+                int len = b.getInt();
+                if ((seen + i) % 2 == 1) {
+                    assertEquals(-1, len);
+                    continue;
+                }
+                byte[] s = new byte[len];
+                b.get(s);
+                assertEquals("m" + (seen + i), new String(s, StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < n; i++) assertEquals((seen + i) / 2.0, b.getDouble());
+            seen += n;
+        }
+        assertEquals(rows, seen);
+        assertFalse(b.hasRemaining());
+    }
+}
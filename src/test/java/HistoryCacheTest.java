@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HistoryCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 20);
+    private static final Clock CLOCK = Clock.fixed(TODAY.atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    private static final long DAY = PetProfile.SAMPLE_BYTES;
+
+    @TempDir
+    Path dir;
+
+    // One weight per day over the last n days.
+    private static PetProfile pet(int id, int days) {
+        PetProfile p = new PetProfile(id, "Pet" + id, CLOCK);
+        p.setHistoryFrom(TODAY.minusDays(days - 1));
+        for (int i = days - 1; i >= 0; i--) p.addWeight(TODAY.minusDays(i), 10);
+        return p;
+    }
+
+    @Test
+    public void testTracksBytesPerDay() {
+        HistoryCache c = new HistoryCache(1 << 20, 7, CLOCK);
+        PetProfile p = pet(1, 10);
+        c.track(p);
+        assertEquals(10, c.buckets());
+        assertEquals(10 * DAY, c.bytes());
+
+        p.addMeal(TODAY, "Kibble", 1.0);
+        c.track(p);
+        assertEquals(10 * DAY + PetProfile.MEAL_BYTES, c.bytes());
+        assertEquals(0, c.trim(List.of(p)));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedPetFirst() {
+        HistoryCache c = new HistoryCache(30 * DAY, 7, CLOCK);
+        PetProfile a = pet(1, 20), b = pet(2, 20);
+        c.track(a);
+        c.track(b);
+        c.touch(a);
+
+        // b was used least recently, so its old end goes first until the budget holds.
+        assertEquals(10, c.trim(List.of(a, b)));
+        assertEquals(TODAY.minusDays(9), b.getHistoryFrom());
+        assertEquals(10, b.getWeightRecords().size());
+        assertEquals(20, a.getWeightRecords().size());
+        assertEquals(30 * DAY, c.bytes());
+    }
+
+    @Test
+    public void testHotDaysStayResident() {
+        HistoryCache c = new HistoryCache(DAY, 7, CLOCK);
+        PetProfile p = pet(1, 30);
+        c.track(p);
+        c.trim(List.of(p));
+        assertEquals(7, p.getWeightRecords().size());
+        assertTrue(p.covers(TODAY.minusDays(6)));
+        assertFalse(p.covers(TODAY.minusDays(7)));
+    }
+
+    @Test
+    public void testDropsPetsNoLongerResident() {
+        HistoryCache c = new HistoryCache(1 << 20, 7, CLOCK);
+        PetProfile a = pet(1, 5), b = pet(2, 5);
+        c.track(a);
+        c.track(b);
+        c.trim(List.of(a));
+        assertEquals(5, c.buckets());
+        assertEquals(5, b.getWeightRecords().size());
+    }
+
+    @Test
+    public void testEnsureReloadsEvictedDays() throws Exception {
+        try (SegmentStore store = new SegmentStore(dir, 1 << 17, 8)) {
+            for (int i = 0; i < 40; i++) store.addWeight(1, TODAY.minusDays(i), 5 + i);
+            PetProfile p = new PetProfile(1, "Jojo", CLOCK);
+            store.loadHistory(1, TODAY.minusDays(39), TODAY.plusDays(1)).join().applyTo(p);
+            assertEquals(40, p.getWeightRecords().size());
+
+            HistoryCache c = new HistoryCache(10 * DAY, 7, CLOCK);
+            c.track(p);
+            c.trim(List.of(p));
+            assertEquals(10, p.getWeightRecords().size());
+
+            c.ensure(store, p, TODAY.minusDays(19), Runnable::run).join();
+            assertEquals(20, p.getWeightRecords().size());
+            assertEquals(TODAY.minusDays(19), p.getHistoryFrom());
+            assertEquals(24.0, p.getWeightSeries().value(0));
+            assertEquals(20, c.buckets());
+        }
+    }
+
+    @Test
+    public void testEnsureDropsReloadWhenRangeMoved() throws Exception {
+        try (SegmentStore store = new SegmentStore(dir, 1 << 17, 8)) {
+            for (int i = 0; i < 40; i++) store.addWeight(1, TODAY.minusDays(i), 5 + i);
+            PetProfile p = new PetProfile(1, "Jojo", CLOCK);
+            store.loadHistory(1, TODAY.minusDays(19), TODAY.plusDays(1)).join().applyTo(p);
+
+            HistoryCache c = new HistoryCache(1 << 20, 7, CLOCK);
+            c.track(p);
+            List<Runnable> owner = new ArrayList<>();
+            var done = c.ensure(store, p, TODAY.minusDays(39), owner::add);
+            p.evictBefore(TODAY.minusDays(9));
+            owner.forEach(Runnable::run);
+            done.join();
+            assertEquals(10, p.getWeightRecords().size());
+            assertEquals(TODAY.minusDays(9), p.getHistoryFrom());
+        }
+    }
+}
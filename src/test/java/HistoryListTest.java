@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class HistoryListTest {
+
+    private static final LocalDate D = LocalDate.of(2024, 3, 10);
+
+    @Test
+    public void testAddKeepsDateOrder() {
+        HistoryList<HistoryRecord.Grooming> l = new HistoryList<>(false, false);
+        l.add(new HistoryRecord.Grooming(D, "b"));
+        l.add(new HistoryRecord.Grooming(D.minusDays(2), "a"));
+        l.add(new HistoryRecord.Grooming(D, "c"));
+
+        assertEquals(List.of("a", "b", "c"), l.items().stream().map(HistoryRecord.Grooming::description).toList());
+    }
+
+    @Test
+    public void testOnePerDayReplaces() {
+        HistoryList<HistoryRecord.Activity> l = new HistoryList<>(true, true);
+        l.add(new HistoryRecord.Activity(D.minusDays(1), 10));
+        l.add(new HistoryRecord.Activity(D, 20));
+        l.add(new HistoryRecord.Activity(D, 30));
+
+        assertEquals(2, l.items().size());
+        assertEquals(new HistoryRecord.Activity(D, 30), l.items().get(0));
+    }
+
+    @Test
+    public void testBatchPrependsOlderHistory() {
+        HistoryList<HistoryRecord.Weight> l = new HistoryList<>(false, false);
+        l.add(new HistoryRecord.Weight(D, 6.0));
+        int[] changes = {0};
+        l.items().addListener((javafx.collections.ListChangeListener<HistoryRecord.Weight>) c -> changes[0]++);
+
+        l.addAll(List.of(new HistoryRecord.Weight(D.minusDays(1), 5.9), new HistoryRecord.Weight(D.minusDays(3), 5.8)));
+
+        assertEquals(1, changes[0]);
+        assertEquals(D.minusDays(3), l.items().get(0).date());
+        assertEquals(D, l.items().get(2).date());
+    }
+
+    @Test
+    public void testBatchMergesOverlap() {
+        HistoryList<HistoryRecord.Activity> l = new HistoryList<>(true, true);
+        l.reset(List.of(new HistoryRecord.Activity(D, 5), new HistoryRecord.Activity(D.minusDays(2), 7)));
+
+        l.addAll(List.of(new HistoryRecord.Activity(D.minusDays(1), 8), new HistoryRecord.Activity(D, 9)));
+
+        assertEquals(List.of(9, 8, 7), l.items().stream().map(HistoryRecord.Activity::minutes).toList());
+    }
+
+    @Test
+    public void testRemoveBefore() {
+        HistoryList<HistoryRecord.Activity> l = new HistoryList<>(true, true);
+        for (int i = 0; i < 5; i++) l.add(new HistoryRecord.Activity(D.minusDays(i), i));
+        l.removeBefore(D.minusDays(1));
+
+        assertEquals(List.of(D, D.minusDays(1)), l.items().stream().map(HistoryRecord::date).toList());
+    }
+}
@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IngestServerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testParsesAndValidatesJson() {
+        LocalDate today = LocalDate.of(2024, 6, 1);
+        List<HistoryRecord.Meal> meals = IngestServer.parseMeals("[{\"name\":\"Kibble\",\"amount\":1.5},{\"date\":\"2024-05-30\",\"name\":\"Egg\",\"amount\":0.5}]", today);
+        assertEquals(List.of(new HistoryRecord.Meal(today, "Kibble", 1.5), new HistoryRecord.Meal(LocalDate.of(2024, 5, 30), "Egg", 0.5)), meals);
+        assertEquals(List.of(new HistoryRecord.Weight(today, 11.2)), IngestServer.parseWeights("{\"weight\":11.2}", today));
+
+        IngestServer.Vitals v = IngestServer.parseVitals("[{\"ts\":1000,\"hr\":80,\"rr\":20},{\"hr\":90,\"rr\":22}]", 5000);
+        assertEquals(2, v.count());
+        assertArrayEquals(new long[] {1000, 5000}, v.millis());
+        assertArrayEquals(new int[] {80, 90}, v.hr());
+
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseMeals("{\"name\":\" \",\"amount\":1}", today));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseMeals("{\"name\":\"a\",\"amount\":0}", today));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseWeights("{\"weight\":\"heavy\"}", today));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseWeights("{\"date\":\"June\",\"weight\":1}", today));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseVitals("{\"hr\":-1,\"rr\":20}", 0));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseVitals("{\"hr\":80.5,\"rr\":20}", 0));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseVitals("[1]", 0));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseVitals("{\"ts\":-1,\"hr\":80,\"rr\":20}", 0));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseVitals("{\"ts\":1e15,\"hr\":80,\"rr\":20}", 0));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseVitals("{\"hr\":3e9,\"rr\":20}", 0));
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.parseVitals("{\"hr\":80,\"rr\":1e15}", 0));
+    }
+
+    @Test
+    public void testDecodesBinaryVitals() {
+        ByteBuffer b = ByteBuffer.allocate(2 * IngestServer.VITAL_BYTES);
+        b.putLong(1000).putInt(80).putInt(20).putLong(2000).putInt(81).putInt(21);
+        IngestServer.Vitals v = IngestServer.decodeVitals(b.array());
+        assertEquals(2, v.count());
+        assertArrayEquals(new long[] {1000, 2000}, v.millis());
+        assertArrayEquals(new int[] {20, 21}, v.rr());
+        assertThrows(IllegalArgumentException.class, () -> IngestServer.decodeVitals(new byte[10]));
+    }
+
+    @Test
+    public void testPostsReachStorage() throws Exception {
+        try (SegmentStore store = new SegmentStore(dir, 1 << 17, 8);
+             IngestServer s = new IngestServer(store, new InetSocketAddress("127.0.0.1", 0), 2)) {
+            s.start();
+            HttpClient c = HttpClient.newHttpClient();
+            String base = "http://127.0.0.1:" + s.port();
+
+            assertEquals(202, post(c, base + "/pets/1/meals", "[{\"name\":\"Kibble\",\"amount\":2}]").statusCode());
+            assertEquals(202, post(c, base + "/pets/1/vitals", "{\"hr\":80,\"rr\":20}").statusCode());
+            HttpResponse<String> bad = post(c, base + "/pets/1/weights", "{\"weight\":-3}");
+            assertEquals(400, bad.statusCode());
+            assertEquals("Weight must be positive.", bad.body());
+            assertEquals(404, post(c, base + "/pets/42/meals", "{}").statusCode());
+            assertEquals(404, post(c, base + "/pets/1/naps", "{}").statusCode());
+            assertEquals(400, post(c, base + "/pets/1/vitals", "{\"hr\":3e9,\"rr\":20}").statusCode());
+
+            HttpResponse<String> metrics = c.send(HttpRequest.newBuilder(URI.create(base + "/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, metrics.statusCode());
+            assertTrue(metrics.body().contains("op=\"http_meals\""));
+
+            store.flush();
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            store.loadProfile(p);
+            assertEquals(2.0, p.getDailyFoodIntake());
+            assertEquals(1, p.getVitals().size());
+        }
+    }
+
+    @Test
+    public void testUnknownPetsDoNotRereadEveryRequest() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        try (SegmentStore store = new SegmentStore(dir, 1 << 17, 8) {
+                @Override
+                public synchronized Map<Integer, String> listPets() {
+                    reads.incrementAndGet();
+                    return super.listPets();
+                }
+            };
+             IngestServer s = new IngestServer(store, new InetSocketAddress("127.0.0.1", 0), 2)) {
+            s.start();
+            HttpClient c = HttpClient.newHttpClient();
+            String base = "http://127.0.0.1:" + s.port();
+            reads.set(0);
+            for (int i = 0; i < 20; i++) assertEquals(404, post(c, base + "/pets/" + (100 + i) + "/meals", "{}").statusCode());
+            assertTrue(reads.get() <= 1, "listPets called " + reads.get() + " times");
+
+            int id = store.createPet("Rex");
+            Thread.sleep(IngestServer.PET_REFRESH_MS + 100);
+            assertEquals(202, post(c, base + "/pets/" + id + "/meals", "{\"name\":\"Kibble\",\"amount\":1}").statusCode());
+        }
+    }
+
+    private static HttpResponse<String> post(HttpClient c, String url, String body) throws Exception {
+        return c.send(HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,28 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+public class JsonTest {
+
+    @Test
+    public void testParsesNestedValues() {
+        Object v = Json.parse(" {\"a\": [1, -2.5e1, true, null], \"b\": \"x\\\"y\\u00e9\", \"c\": {}} ");
+        Map<?, ?> m = (Map<?, ?>) v;
+        assertEquals(List.of(1.0, -25.0, true), ((List<?>) m.get("a")).subList(0, 3));
+        assertNull(((List<?>) m.get("a")).get(3));
+        assertEquals("x\"yé", m.get("b"));
+        assertEquals(Map.of(), m.get("c"));
+    }
+
+    @Test
+    public void testRejectsMalformed() {
+        assertThrows(IllegalArgumentException.class, () -> Json.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("[1,"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("{\"a\" 1}"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("\"open"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("[1] x"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("1-2"));
+    }
+}
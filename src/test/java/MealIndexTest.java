@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MealIndexTest {
+
+    private static final LocalDate D1 = LocalDate.of(2023, 10, 1);
+
+    @Test
+    public void testDailyTotals() {
+        MealIndex idx = new MealIndex();
+        idx.add(new HistoryRecord.Meal(D1, "Kibble", 1.5));
+        idx.add(new HistoryRecord.Meal(D1, "Treat", 0.5));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(1), "Kibble", 1.0));
+
+        assertEquals(2.0, idx.total(D1));
+        assertEquals(1.0, idx.total(D1.plusDays(1)));
+        assertEquals(0, idx.total(D1.minusDays(1)));
+        assertEquals(3, idx.size());
+        assertEquals(2, idx.dayCount());
+    }
+
+    @Test
+    public void testRangeTotal() {
+        MealIndex idx = new MealIndex();
+        for (int i = 0; i < 30; i++) idx.add(new HistoryRecord.Meal(D1.plusDays(i), "Kibble", 1.0));
+
+        assertEquals(7.0, idx.total(D1, D1.plusDays(6)));
+        assertEquals(30.0, idx.total(D1.minusDays(10), D1.plusDays(100)));
+        assertEquals(0, idx.total(D1.plusDays(5), D1));
+    }
+
+    @Test
+    public void testIterationIsChronological() {
+        MealIndex idx = new MealIndex();
+        idx.add(new HistoryRecord.Meal(D1.plusDays(2), "C", 1));
+        idx.add(new HistoryRecord.Meal(D1, "A", 1));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(1), "B", 1));
+
+        List<String> names = new ArrayList<>();
+        idx.forEach(m -> names.add(m.name()));
+        assertEquals(List.of("A", "B", "C"), names);
+    }
+
+    @Test
+    public void testDailyTotalSeries() {
+        MealIndex idx = new MealIndex();
+        idx.add(new HistoryRecord.Meal(D1, "A", 1));
+        idx.add(new HistoryRecord.Meal(D1, "B", 0.5));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(3), "C", 2));
+
+        DaySeries t = idx.dailyTotals(D1, D1.plusDays(3));
+        assertEquals(2, t.size());
+        assertEquals(1.5, t.get(D1));
+        assertEquals(2.0, t.get(D1.plusDays(3)));
+        assertEquals(0, idx.dailyTotals(D1.plusDays(1), D1).size());
+    }
+
+    @Test
+    public void testRemoveBefore() {
+        MealIndex idx = new MealIndex();
+        idx.add(new HistoryRecord.Meal(D1, "Kibble", 1.5));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(1), "Treat", 0.5));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(2), "Kibble", 1.0));
+        idx.removeBefore(D1.plusDays(2));
+
+        assertEquals(1, idx.size());
+        assertEquals(0.0, idx.total(D1));
+        assertEquals(1.0, idx.total(D1, D1.plusDays(2)));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(1), "Back", 2.0));
+        assertEquals(2.0, idx.total(D1.plusDays(1)));
+    }
+
+    @Test
+    public void testTotalsByFood() {
+        MealIndex idx = new MealIndex();
+        idx.add(new HistoryRecord.Meal(D1, "Kibble", 1.5));
+        idx.add(new HistoryRecord.Meal(D1, "Treat", 0.5));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(1), "Kibble", 1.0));
+        idx.add(new HistoryRecord.Meal(D1.plusDays(5), "Kibble", 9.0));
+
+        double[] byFood = idx.totalsByFood(D1, D1.plusDays(1));
+        assertEquals(2.5, byFood[NameDictionary.FOODS.encode("Kibble")]);
+        assertEquals(0.5, byFood[NameDictionary.FOODS.encode("Treat")]);
+        for (double v : idx.totalsByFood(D1.plusDays(2), D1.plusDays(4))) assertEquals(0, v);
+    }
+}
@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+public class MetricsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        Metrics.Timer t = Metrics.timer("test_buckets");
+        for (int i = 0; i < 99; i++) t.recordNanos(3_000);
+        t.recordNanos(5_000_000);
+
+        assertEquals(100, t.getCount());
+        assertEquals(99, t.bucket(2));
+        assertEquals(0.004, t.getP50Millis());
+        assertEquals(0.004, t.getP99Millis());
+        assertEquals(5.0, t.percentileMillis(1.0));
+        assertEquals(5.0, t.getMaxMillis());
+    }
+
+    @Test
+    public void testPrometheusDump() {
+        Metrics.Timer t = Metrics.timer("test_dump");
+        t.recordNanos(1_500);
+        t.error();
+        Metrics.gauge("test_gauge", () -> 7);
+
+        String text = Metrics.prometheus();
+        assertTrue(text.contains("dawgtracker_latency_seconds_bucket{op=\"test_dump\",le=\"2.0E-6\"} 1"));
+        assertTrue(text.contains("dawgtracker_latency_seconds_count{op=\"test_dump\"} 1"));
+        assertTrue(text.contains("dawgtracker_errors_total{op=\"test_dump\"} 1"));
+        assertTrue(text.contains("dawgtracker_test_gauge 7"));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        Metrics.timer("test_jmx").recordNanos(2_000_000);
+        Object count = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("dawgtracker:type=Latency,name=test_jmx"), "Count");
+        assertEquals(1L, count);
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NameDictionaryTest {
+
+    @Test
+    public void testCodesRoundTrip() {
+        NameDictionary d = new NameDictionary();
+        int kibble = d.encode("Kibble");
+        int treat = d.encode("Treat");
+        assertNotEquals(kibble, treat);
+        assertEquals(kibble, d.encode(new String("Kibble")));
+        assertEquals("Treat", d.name(treat));
+        assertEquals(2, d.size());
+        assertEquals(NameDictionary.NONE, d.encode(null));
+        assertNull(d.name(NameDictionary.NONE));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        NameDictionary d = new NameDictionary();
+        for (int i = 0; i < 100; i++) assertEquals(i, d.encode("food" + i));
+        assertEquals("food99", d.name(99));
+    }
+
+    @Test
+    public void testConcurrentEncodesAgree() throws Exception {
+        NameDictionary d = new NameDictionary();
+        List<Thread> threads = new ArrayList<>();
+        int[][] seen = new int[4][50];
+        for (int t = 0; t < 4; t++) {
+            int k = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) seen[k][i] = d.encode("n" + i);
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        assertEquals(50, d.size());
+        for (int i = 0; i < 50; i++) {
+            for (int t = 1; t < 4; t++) assertEquals(seen[0][i], seen[t][i]);
+            assertEquals("n" + i, d.name(seen[0][i]));
+        }
+    }
+
+    @Test
+    public void testRecordsShareText() {
+        LocalDate d = LocalDate.of(2024, 1, 1);
+        HistoryRecord.Meal a = new HistoryRecord.Meal(d, new String("Chicken"), 1.0);
+        HistoryRecord.Meal b = new HistoryRecord.Meal(d, new String("Chicken"), 1.0);
+        assertEquals(a, b);
+        assertSame(a.name(), b.name());
+        HistoryRecord.Grooming g = new HistoryRecord.Grooming(d, "Teeth Brushing Done");
+        assertEquals("Teeth Brushing Done", g.description());
+        assertNull(new HistoryRecord.Grooming(d, (String) null).description());
+    }
+}
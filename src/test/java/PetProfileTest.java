@@ -5,6 +5,7 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 public class PetProfileTest {
@@ -66,6 +67,58 @@ public class PetProfileTest {
         assertEquals(2, h.size());
     }
 
+    @Test
+    public void testWeeklyFoodIntake() {
+        Clock c = Clock.fixed(Instant.parse("2023-10-10T12:00:00Z"), ZoneId.of("UTC"));
+        PetProfile p = new PetProfile("TestDog", c);
+
+        p.addMeal(LocalDate.of(2023, 10, 1), "Old", 5.0);
+        p.addMeal(LocalDate.of(2023, 10, 4), "Edge", 1.0);
+        p.addFood("Today", 2.0);
+
+        assertEquals(2.0, p.getDailyFoodIntake());
+        assertEquals(3.0, p.getWeeklyFoodIntake());
+        assertEquals(8.0, p.getMonthlyFoodIntake());
+        assertEquals(5.0, p.getFoodIntake(LocalDate.of(2023, 10, 1)));
+    }
+
+    @Test
+    public void testCustomRoutines() {
+        PetProfile p = new PetProfile("TestDog");
+        Routine trim = p.addRoutine("Nail Trim", 21);
+
+        assertSame(trim, p.getRoutine("Nail Trim"));
+        assertSame(trim, p.addRoutine("Nail Trim", 5));
+        assertEquals(21, trim.getFreq());
+        assertEquals(6, p.getRoutines().size());
+
+        assertFalse(p.removeRoutine(PetProfile.TEETH));
+        assertTrue(p.removeRoutine("Nail Trim"));
+        assertNull(p.getRoutine("Nail Trim"));
+    }
+
+    @Test
+    public void testHistoryListenerSeesBatchOnce() {
+        PetProfile p = new PetProfile("TestDog");
+        List<HistoryRecord> added = new ArrayList<>();
+        int[] batches = {0};
+        p.setHistoryListener(new PetProfile.HistoryListener() {
+            public void added(HistoryRecord r) { added.add(r); }
+            public void loaded(HistoryBatch b) { batches[0]++; }
+        });
+
+        p.logGrooming(LocalDate.of(2024, 1, 2), "Bath");
+        HistoryBatch b = new HistoryBatch(LocalDate.of(2023, 12, 1));
+        b.weights.add(new HistoryRecord.Weight(LocalDate.of(2023, 12, 5), 6.1));
+        b.meals.add(new HistoryRecord.Meal(LocalDate.of(2023, 12, 5), "Kibble", 1.0));
+        b.applyTo(p);
+
+        assertEquals(List.of(new HistoryRecord.Grooming(LocalDate.of(2024, 1, 2), "Bath")), added);
+        assertEquals(1, batches[0]);
+        assertEquals(1, p.getWeightRecords().size());
+        assertNotNull(p.getHistoryListener());
+    }
+
     @Test
     public void testAddWt() {
         Clock c = Clock.fixed(Instant.parse("2023-10-01T12:00:00Z"), ZoneId.of("UTC"));
@@ -110,6 +163,119 @@ public class PetProfileTest {
          assertEquals(45, p.getDailyActivities().get(LocalDate.now(c)));
     }
 
+    @Test
+    public void testBackfilledHistoryStaysOrdered() {
+        PetProfile p = new PetProfile("TestDog");
+        p.addMeal(LocalDate.of(2023, 10, 5), "New", 1.0);
+        p.addMeal(LocalDate.of(2023, 10, 1), "Old", 1.0);
+        p.addMeal(LocalDate.of(2023, 10, 3), "Mid", 1.0);
+
+        List<String> h = p.getMealLogs();
+        assertTrue(h.get(0).contains("Old"));
+        assertTrue(h.get(1).contains("Mid"));
+        assertTrue(h.get(2).contains("New"));
+    }
+
+    @Test
+    public void testHistoryFromOnlyMovesBack() {
+        PetProfile p = new PetProfile("TestDog");
+        assertNull(p.getHistoryFrom());
+
+        p.setHistoryFrom(LocalDate.of(2023, 10, 1));
+        p.setHistoryFrom(LocalDate.of(2023, 11, 1));
+        assertEquals(LocalDate.of(2023, 10, 1), p.getHistoryFrom());
+
+        p.setHistoryFrom(LocalDate.of(2023, 9, 1));
+        assertEquals(LocalDate.of(2023, 9, 1), p.getHistoryFrom());
+    }
+
+    @Test
+    public void testRangeQueries() {
+        Clock c = Clock.fixed(Instant.parse("2023-10-10T12:00:00Z"), ZoneId.of("UTC"));
+        PetProfile p = new PetProfile("TestDog", c);
+        LocalDate today = LocalDate.of(2023, 10, 10);
+        p.setTargets(30, 6.5, 2.0);
+        for (int i = 0; i < 10; i++) p.addDailyActivity(today.minusDays(i), i * 10);
+        p.addMeal(today.minusDays(2), "Kibble", 1.0);
+        p.addMeal(today.minusDays(2), "Treat", 0.25);
+        p.addMeal(today, "Kibble", 1.5);
+
+        assertEquals(7, p.getGoalDays(today.minusDays(9), today));
+        assertEquals(2, p.getGoalDays(today.minusDays(4), today));
+        DaySeries food = p.getDailyFoodTotals(today.minusDays(6), today);
+        assertEquals(2, food.size());
+        assertEquals(1.25, food.get(today.minusDays(2)));
+
+        assertFalse(p.covers(today.minusDays(5)));
+        p.setHistoryFrom(today.minusDays(5));
+        assertTrue(p.covers(today.minusDays(5)));
+        assertFalse(p.covers(today.minusDays(6)));
+    }
+
+    @Test
+    public void testWeightTrendFollowsBackfill() {
+        PetProfile p = new PetProfile("TestDog");
+        LocalDate d = LocalDate.of(2024, 3, 1);
+        for (int i = 0; i < 5; i++) p.addWeight(d.plusDays(i * 5), 10 + i * 0.2);
+        assertEquals(5, p.getWeightTrend().size());
+        assertEquals(10.4, p.getWeightTrend().mean(), 1e-9);
+
+        p.addWeight(d.plusDays(1), 4.4); // older than the newest sample
+        assertEquals(6, p.getWeightTrend().size());
+        assertEquals(9.4, p.getWeightTrend().mean(), 1e-9);
+    }
+
+    @Test
+    public void testEvictBefore() {
+        LocalDate today = LocalDate.of(2024, 5, 20);
+        Clock clock = Clock.fixed(today.atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+        PetProfile p = new PetProfile(1, "TestDog", clock);
+        p.setHistoryFrom(today.minusDays(9));
+        for (int i = 0; i < 10; i++) {
+            p.addMeal(today.minusDays(i), "Kibble", 1.0);
+            p.addWeight(today.minusDays(i), 10 + i);
+            p.logGrooming(today.minusDays(i), "Brush");
+            p.addDailyActivity(today.minusDays(i), 30);
+        }
+        List<LocalDate> evicted = new ArrayList<>();
+        p.setHistoryListener(new PetProfile.HistoryListener() {
+            public void added(HistoryRecord r) {}
+            public void loaded(HistoryBatch b) {}
+            public void evicted(LocalDate before) { evicted.add(before); }
+        });
+        long before = p.historyBytesByDay().values().stream().mapToLong(Long::longValue).sum();
+
+        p.evictBefore(today.minusDays(2));
+        assertEquals(List.of(today.minusDays(2)), evicted);
+        assertEquals(3, p.getMealRecords().size());
+        assertEquals(3, p.getWeightRecords().size());
+        assertEquals(3, p.getGroomingRecords().size());
+        assertEquals(3, p.getActivityRecords().size());
+        assertTrue(p.covers(today.minusDays(2)));
+        assertFalse(p.covers(today.minusDays(3)));
+        assertEquals(3, p.historyBytesByDay().size());
+        assertTrue(p.historyBytesByDay().values().stream().mapToLong(Long::longValue).sum() < before);
+        assertEquals(11, p.getWeightTrend().mean());
+
+        p.evictBefore(today.minusDays(5));
+        assertEquals(1, evicted.size());
+        assertEquals(today.minusDays(2), p.getHistoryFrom());
+    }
+
+    @Test
+    public void testFoodTotalsLargestFirst() {
+        LocalDate today = LocalDate.of(2024, 5, 20);
+        PetProfile p = new PetProfile(1, "TestDog", Clock.fixed(today.atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+        p.addMeal(today, "Treat", 0.5);
+        p.addMeal(today, "Kibble", 1.0);
+        p.addMeal(today.minusDays(1), "Kibble", 2.0);
+        p.addMeal(today.minusDays(10), "Chicken", 5.0);
+
+        assertEquals(List.of("Kibble", "Treat"), new ArrayList<>(p.getFoodTotals(today.minusDays(6), today).keySet()));
+        assertEquals(3.0, p.getFoodTotals(today.minusDays(6), today).get("Kibble"));
+        assertEquals(5.0, p.getFoodTotals(today.minusDays(30), today).values().iterator().next());
+    }
+
     static class MutableClock extends Clock {
         private Instant instant;
         private final ZoneId zone;
@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PetRegistryTest {
+
+    private static PetProfile load(int id) {
+        return new PetProfile(id, "Dog " + id, Clock.systemDefaultZone());
+    }
+
+    @Test
+    public void testLoadsOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        PetRegistry reg = new PetRegistry(id -> {
+            loads.incrementAndGet();
+            return load(id);
+        }, 10, 60_000);
+
+        PetProfile a = reg.get(1);
+        assertSame(a, reg.get(1));
+        assertEquals(1, a.getId());
+        assertEquals(1, loads.get());
+        assertNull(reg.getIfLoaded(2));
+    }
+
+    // computeIfAbsent would throw on the nested update.
+    @Test
+    public void testLoaderMayUseRegistry() {
+        PetRegistry[] reg = new PetRegistry[1];
+        reg[0] = new PetRegistry(id -> {
+            if (id == 1) reg[0].get(17); // same bin as 1
+            return load(id);
+        }, 10, 60_000);
+
+        assertEquals(1, reg[0].get(1).getId());
+        assertTrue(reg[0].isLoaded(17));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        AtomicLong now = new AtomicLong();
+        PetRegistry reg = new PetRegistry(PetRegistryTest::load, 2, 60_000, now::get);
+
+        reg.get(1);
+        now.set(1);
+        reg.get(2);
+        now.set(2);
+        reg.get(1);
+        now.set(3);
+        reg.get(3);
+
+        assertEquals(2, reg.size());
+        assertTrue(reg.isLoaded(1));
+        assertFalse(reg.isLoaded(2));
+        assertTrue(reg.isLoaded(3));
+    }
+
+    @Test
+    public void testEvictIdle() {
+        AtomicLong now = new AtomicLong();
+        PetRegistry reg = new PetRegistry(PetRegistryTest::load, 10, 100, now::get);
+
+        reg.get(1);
+        now.set(80);
+        reg.get(2);
+        now.set(150);
+
+        assertEquals(1, reg.evictIdle());
+        assertFalse(reg.isLoaded(1));
+        assertTrue(reg.isLoaded(2));
+    }
+
+    @Test
+    public void testGetIfLoadedCountsAsUse() {
+        AtomicLong now = new AtomicLong();
+        PetRegistry reg = new PetRegistry(PetRegistryTest::load, 10, 100, now::get);
+
+        reg.get(1);
+        now.set(80);
+        assertNotNull(reg.getIfLoaded(1));
+        now.set(150);
+
+        assertEquals(0, reg.evictIdle());
+        assertNull(reg.getIfLoaded(2));
+        assertFalse(reg.isLoaded(2));
+    }
+}
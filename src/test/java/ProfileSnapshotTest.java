@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+
+public class ProfileSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        LocalDate today = LocalDate.now();
+        PetProfile p = new PetProfile(3, "Rex", Clock.systemDefaultZone());
+        p.addMeal(today, "Kibble", 1.5);
+        p.addMeal(today.minusDays(2), "Chicken é", 0.5);
+        p.addWeight(today, 11.2);
+        p.logGrooming(today, "Brushed");
+        p.addDailyActivity(today.minusDays(1), 40);
+        p.setHistoryFrom(today.minusDays(90));
+
+        Path file = dir.resolve("pet-3.snap");
+        ProfileSnapshot.write(file, p, 7, 100, 200, 300);
+        ProfileSnapshot s = ProfileSnapshot.read(file);
+
+        assertNotNull(s);
+        assertEquals(3, s.petId);
+        assertEquals(7, s.dataVersion);
+        assertEquals(100, s.lastMealId);
+        assertEquals(200, s.lastWeightId);
+        assertEquals(300, s.lastGroomId);
+        assertEquals(today, s.taken);
+
+        PetProfile q = new PetProfile(3, "Rex", Clock.systemDefaultZone());
+        s.history.applyTo(q);
+        assertEquals(p.getMealRecords(), q.getMealRecords());
+        assertEquals(p.getWeightRecords(), q.getWeightRecords());
+        assertEquals(p.getGroomingRecords(), q.getGroomingRecords());
+        assertEquals(p.getActivityRecords(), q.getActivityRecords());
+        assertEquals(today.minusDays(90), q.getHistoryFrom());
+    }
+
+    @Test
+    public void testNullTextRoundTrips() throws Exception {
+        LocalDate today = LocalDate.now();
+        PetProfile p = new PetProfile(3, "Rex", Clock.systemDefaultZone());
+        p.addMeal(today, null, 1.0);
+        p.logGrooming(today, null);
+        p.setHistoryFrom(today.minusDays(90));
+
+        Path file = dir.resolve("pet-3.snap");
+        ProfileSnapshot.write(file, p, 1, 1, 0, 1);
+        ProfileSnapshot s = ProfileSnapshot.read(file);
+
+        assertNotNull(s);
+        assertNull(s.history.meals.get(0).name());
+        assertEquals(1.0, s.history.meals.get(0).amount());
+        assertNull(s.history.grooming.get(0).description());
+    }
+
+    @Test
+    public void testMissingOrCorruptIsNull() throws Exception {
+        Path file = dir.resolve("pet-1.snap");
+        assertNull(ProfileSnapshot.read(file));
+
+        Files.write(file, new byte[] {0x44, 0x41, 0x57, 0x47, 0, 0, 0, 1, 0, 0});
+        assertNull(ProfileSnapshot.read(file));
+
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertNull(ProfileSnapshot.read(file));
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RoutineSchedulerTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-05-10T10:00:00Z"), ZoneId.of("UTC"));
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 10);
+
+    private static Routine routine(String name, int freq, LocalDate last) {
+        Routine r = new Routine(name, freq, CLOCK);
+        r.setLast(last);
+        return r;
+    }
+
+    @Test
+    public void testPeekReturnsEarliest() {
+        RoutineScheduler s = new RoutineScheduler(CLOCK);
+        s.schedule(1, routine("A", 10, TODAY));
+        s.schedule(2, routine("B", 3, TODAY));
+        s.schedule(1, routine("C", 7, TODAY));
+
+        assertEquals("B", s.peek().routine().getName());
+        assertEquals(2, s.peek().petId());
+        assertEquals(TODAY.plusDays(3), s.peek().dueDate());
+    }
+
+    @Test
+    public void testRescheduleSupersedesOldEntry() {
+        RoutineScheduler s = new RoutineScheduler(CLOCK);
+        Routine a = routine("A", 1, TODAY);
+        s.schedule(1, a);
+        s.schedule(1, routine("B", 5, TODAY));
+
+        a.setFreq(30);
+        s.schedule(1, a);
+
+        assertEquals("B", s.peek().routine().getName());
+        assertEquals(2, s.size());
+    }
+
+    @Test
+    public void testPollDueFiresOnce() {
+        RoutineScheduler s = new RoutineScheduler(CLOCK);
+        Routine overdue = routine("Teeth", 1, TODAY.minusDays(3));
+        s.schedule(1, overdue);
+        s.schedule(1, routine("Bath", 7, TODAY));
+        s.schedule(2, routine("Teeth", 2, TODAY.minusDays(2)));
+
+        List<RoutineScheduler.Due> due = s.pollDue();
+        assertEquals(2, due.size());
+        assertEquals(TODAY.minusDays(2), due.get(0).dueDate());
+        assertTrue(s.pollDue().isEmpty());
+
+        overdue.setLast(TODAY.minusDays(1));
+        s.schedule(1, overdue);
+        assertEquals(1, s.pollDue().size());
+    }
+
+    @Test
+    public void testCancel() {
+        RoutineScheduler s = new RoutineScheduler(CLOCK);
+        s.schedule(1, routine("A", 1, TODAY.minusDays(5)));
+        s.cancel(1, "A");
+
+        assertNull(s.peek());
+        assertTrue(s.pollDue().isEmpty());
+    }
+
+    @Test
+    public void testTimerNotifies() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        try (RoutineScheduler s = new RoutineScheduler(CLOCK)) {
+            s.schedule(1, routine("A", 1, TODAY.minusDays(1)));
+            s.start(10, due -> fired.countDown());
+            assertTrue(fired.await(2, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testAdoptSchedulesEachPetOnce() {
+        RoutineScheduler s = new RoutineScheduler(CLOCK);
+        List<Routine> routines = List.of(routine("A", 1, TODAY.minusDays(2)), routine("B", 30, TODAY));
+        s.adopt(1, routines);
+        assertEquals(1, s.pollDue().size());
+
+        // Loading the pet again must not bring the fired routine back.
+        s.adopt(1, routines);
+        assertTrue(s.pollDue().isEmpty());
+        assertEquals(1, s.size());
+
+        s.adopt(2, routines);
+        assertEquals(2, s.pollDue().get(0).petId());
+    }
+}
@@ -0,0 +1,77 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+public class SchemaMigrationsTest {
+
+    @Test
+    public void testVersionsAreConsecutive() {
+        int expected = 1;
+        for (SchemaMigrations.Migration m : SchemaMigrations.ALL) {
+            assertEquals(expected++, m.version());
+        }
+        assertEquals(SchemaMigrations.ALL.size(), SchemaMigrations.latest());
+    }
+
+    @Test
+    public void testDescriptionsAreDistinct() {
+        Set<String> seen = new HashSet<>();
+        for (SchemaMigrations.Migration m : SchemaMigrations.ALL) {
+            assertFalse(m.description().isBlank());
+            assertTrue(seen.add(m.description()));
+        }
+    }
+
+    // Migrates a throwaway schema from scratch and checks that an all-pet date range, bounded on
+    // pet_id only by the int range as exportHistory does, is planned on the date index. Skipped
+    // when no database is reachable.
+    @Test
+    public void testAllPetRangeUsesDateIndex() throws SQLException {
+        Connection conn = connectOrNull();
+        assumeTrue(conn != null, "no database");
+        String schema = "migration_test_" + System.nanoTime();
+        try (conn; Statement s = conn.createStatement()) {
+            s.execute("CREATE SCHEMA " + schema);
+            try {
+                s.execute("SET search_path TO " + schema);
+                assertEquals(SchemaMigrations.latest(), SchemaMigrations.run(conn));
+                s.execute("INSERT INTO meals (pet_id, date, amount) SELECT i % 50, DATE '2020-01-01' + i / 50, 1 FROM generate_series(1, 20000) i");
+                s.execute("ANALYZE meals");
+                s.execute("SET enable_seqscan = off");
+                StringBuilder plan = new StringBuilder();
+                try (PreparedStatement ps = conn.prepareStatement("EXPLAIN SELECT * FROM meals WHERE pet_id BETWEEN ? AND ? AND date >= ? AND date <= ?")) {
+                    ps.setInt(1, Integer.MIN_VALUE);
+                    ps.setInt(2, Integer.MAX_VALUE);
+                    ps.setDate(3, java.sql.Date.valueOf(LocalDate.of(2020, 3, 1)));
+                    ps.setDate(4, java.sql.Date.valueOf(LocalDate.of(2020, 3, 7)));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                assertTrue(plan.toString().contains("meals_date_idx"), plan.toString());
+            } finally {
+                s.execute("RESET search_path");
+                s.execute("DROP SCHEMA " + schema + " CASCADE");
+            }
+        }
+    }
+
+    private static Connection connectOrNull() {
+        try {
+            return DriverManager.getConnection(System.getenv().getOrDefault("DB_URL", "jdbc:postgresql://localhost:5432/petmonitor"),
+                    System.getenv().getOrDefault("DB_USER", "postgres"), System.getenv().getOrDefault("DB_PASS", "postgres"));
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
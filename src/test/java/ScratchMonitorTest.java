@@ -0,0 +1,51 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScratchMonitorTest {
+
+    @Test
+    public void testStableSeriesDoesNotAlert() {
+        ScratchMonitor m = new ScratchMonitor();
+        for (int i = 0; i < 200; i++) assertFalse(m.update(5 + i % 3));
+        assertEquals(6, m.getMean(), 1.0);
+    }
+
+    @Test
+    public void testSpikeAlerts() {
+        ScratchMonitor m = new ScratchMonitor();
+        for (int i = 0; i < 30; i++) m.update(5 + i % 2);
+
+        boolean alerted = false;
+        for (int i = 0; i < 3; i++) alerted |= m.update(25);
+        assertTrue(alerted);
+        assertTrue(m.getScore() > 4.0);
+    }
+
+    @Test
+    public void testAlertClearsAfterRecovery() {
+        ScratchMonitor m = new ScratchMonitor();
+        for (int i = 0; i < 30; i++) m.update(5);
+        for (int i = 0; i < 3; i++) m.update(30);
+        assertTrue(m.isAlerting());
+
+        for (int i = 0; i < 50; i++) m.update(5);
+        assertFalse(m.isAlerting());
+    }
+
+    @Test
+    public void testNoAlertDuringWarmup() {
+        ScratchMonitor m = new ScratchMonitor();
+        m.update(0);
+        assertFalse(m.update(100));
+    }
+
+    @Test
+    public void testReset() {
+        ScratchMonitor m = new ScratchMonitor();
+        m.update(10);
+        m.update(12);
+        m.reset();
+        assertEquals(0, m.getCount());
+        assertEquals(0, m.getMean());
+    }
+}
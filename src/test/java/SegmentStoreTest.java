@@ -0,0 +1,255 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SegmentStoreTest {
+
+    private static final int SEGMENT = 1 << 17;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testSeedsDefaultPet() throws Exception {
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 8)) {
+            assertEquals("Jojo", s.listPets().get(1));
+            assertEquals(2, s.createPet("Rex"));
+        }
+    }
+
+    @Test
+    public void testReopenRestoresState() throws Exception {
+        LocalDate today = LocalDate.now();
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 8)) {
+            int id = s.createPet("Rex");
+            PetProfile p = new PetProfile(id, "Rex", Clock.systemDefaultZone());
+            p.updateStats(70, 20, 45, 3);
+            p.setTargets(90, 12.0, 3.5);
+            p.getTeeth().setFreq(5);
+            s.saveStats(p);
+            s.saveSettings(p);
+            s.addMeal(id, today, "Kibble", 1.5);
+            s.addMeal(id, today.minusDays(400), "Old", 9.0);
+            s.addWeight(id, today, 11.2);
+            s.addGroomingLog(id, today, "Brushed");
+        }
+
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 8)) {
+            assertEquals("Rex", s.listPets().get(2));
+            PetProfile p = new PetProfile(2, "Rex", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            assertEquals(70, p.getHr());
+            assertEquals(45, p.getAct());
+            assertEquals(90, p.getTgtAct());
+            assertEquals(12.0, p.getOptWt());
+            assertEquals(5, p.getTeeth().getFreq());
+            assertEquals(1.5, p.getDailyFoodIntake());
+            assertEquals(1, p.getWeightSeries().size());
+            assertEquals(1, p.getGroomingLogs().size());
+            assertEquals(1, p.getVitals().size());
+
+            for (int i = 0; i < 4; i++) s.loadOlder(p).join().applyTo(p);
+            assertEquals(9.0, p.getFoodIntake(today.minusDays(400)));
+        }
+    }
+
+    @Test
+    public void testCustomRoutinesSurviveReopen() throws Exception {
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 8)) {
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.updateRoutine(1, p.addRoutine("Nail Trim", 21));
+            s.updateRoutine(1, p.addRoutine("Flea Bath", 10));
+            s.removeRoutine(1, "Flea Bath");
+        }
+
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 8)) {
+            assertEquals(1, s.loadRoutines().get(1).size());
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadSummary(p);
+            assertEquals(21, p.getRoutine("Nail Trim").getFreq());
+            assertNull(p.getRoutine("Flea Bath"));
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsLatestActivity() throws Exception {
+        LocalDate today = LocalDate.now();
+        int n = 4096;
+        long[] ts = new long[n];
+        int[] hr = new int[n], rr = new int[n];
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 2)) {
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            for (int i = 0; i < 6; i++) {
+                p.updateStats(60, 18, i, 0);
+                s.saveStats(p);
+                s.addVitals(1, ts, hr, rr, n);
+            }
+            s.awaitCompaction();
+            try (var files = Files.list(dir)) {
+                assertEquals(s.segmentCount(), files.filter(f -> f.toString().endsWith(".log")).count());
+            }
+            s.addMeal(1, today, "Kibble", 2.0);
+        }
+
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 2)) {
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            assertEquals(5, p.getAct());
+            assertEquals(1, p.getActivitySeries().size());
+            assertEquals(5.0, p.getActivitySeries().value(0));
+            assertEquals(2.0, p.getDailyFoodIntake());
+        }
+    }
+
+    // Copies the directory as a crash would leave it partway through the rewrite.
+    @Test
+    public void testCrashMidCompactionKeepsHistory(@TempDir Path crashed) throws Exception {
+        LocalDate today = LocalDate.now();
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 100)) {
+            for (int i = 0; i < 10; i++) s.addMeal(1, today.minusDays(i), "Kibble", 1.0);
+            int[] copied = {0};
+            s.compactionStep = () -> {
+                if (++copied[0] != 5) return;
+                try (var files = Files.list(dir)) {
+                    for (Path f : (Iterable<Path>) files::iterator) Files.copy(f, crashed.resolve(f.getFileName()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            s.compact();
+        }
+
+        try (SegmentStore s = new SegmentStore(crashed, SEGMENT, 100)) {
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            for (int i = 0; i < 10; i++) assertEquals(1.0, p.getFoodIntake(today.minusDays(i)));
+            try (var files = Files.list(crashed)) {
+                assertEquals(s.segmentCount(), files.filter(f -> f.toString().endsWith(".log")).count());
+            }
+        }
+    }
+
+    @Test
+    public void testFailedCompactionRollsBack() throws Exception {
+        LocalDate today = LocalDate.now();
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 100)) {
+            s.addMeal(1, today, "Kibble", 2.0);
+            s.addWeight(1, today, 7.0);
+            s.compactionStep = () -> { throw new UncheckedIOException(new IOException("disk full")); };
+            assertThrows(UncheckedIOException.class, s::compact);
+            s.compactionStep = null;
+            s.addMeal(1, today, "Treat", 0.5);
+
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            assertEquals(2.5, p.getDailyFoodIntake());
+        }
+
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 100)) {
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            assertEquals(2.5, p.getDailyFoodIntake());
+            assertEquals(1, p.getWeightSeries().size());
+            try (var files = Files.list(dir)) {
+                assertEquals(s.segmentCount(), files.filter(f -> f.toString().endsWith(".log")).count());
+            }
+        }
+    }
+
+    @Test
+    public void testRecentVitalsTailAfterCompaction() throws Exception {
+        int n = 3000;
+        long[] ts = new long[n];
+        int[] hr = new int[n], rr = new int[n];
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 100)) {
+            for (int k = 0; k < 3; k++) {
+                for (int i = 0; i < n; i++) ts[i] = k * n + i;
+                s.addVitals(1, ts, hr, rr, n);
+                s.addVitals(2, ts, hr, rr, 10);
+            }
+            s.compact();
+            s.addVitals(1, new long[]{3 * n}, new int[]{60}, new int[]{20}, 1);
+
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            VitalsBuffer v = p.getVitals();
+            long oldest = 3 * n + 1 - v.capacity();
+            assertEquals(v.capacity(), v.size());
+            assertEquals(3 * n, v.latestMillis());
+            assertEquals(v.capacity(), v.summarize(oldest).count());
+        }
+    }
+
+    // The rewrite is parked partway; appends and reads must still go through.
+    @Test
+    public void testAppendsProceedDuringBackgroundCompaction() throws Exception {
+        LocalDate today = LocalDate.now();
+        int n = 4096;
+        long[] ts = new long[n];
+        int[] hr = new int[n], rr = new int[n];
+        CountDownLatch parked = new CountDownLatch(1), release = new CountDownLatch(1);
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 2)) {
+            s.compactionStep = () -> {
+                parked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            s.addMeal(1, today, "Kibble", 1.0);
+            while (parked.getCount() > 0) s.addVitals(1, ts, hr, rr, n);
+            assertTrue(parked.await(5, TimeUnit.SECONDS));
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                s.addMeal(1, today, "Treat", 0.5);
+                PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+                s.loadProfile(p);
+                assertEquals(1.5, p.getDailyFoodIntake());
+            });
+            s.compactionStep = null;
+            release.countDown();
+            s.awaitCompaction();
+            s.addMeal(1, today, "Snack", 0.25);
+
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            assertEquals(1.75, p.getDailyFoodIntake());
+        }
+
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 2)) {
+            PetProfile p = new PetProfile(1, "Jojo", Clock.systemDefaultZone());
+            s.loadProfile(p);
+            assertEquals(1.75, p.getDailyFoodIntake());
+            try (var files = Files.list(dir)) {
+                assertEquals(s.segmentCount(), files.filter(f -> f.toString().endsWith(".log")).count());
+            }
+        }
+    }
+
+    @Test
+    public void testNullAndOversizedText() throws Exception {
+        LocalDate today = LocalDate.now();
+        String smile = "\uD83D\uDE00"; // four UTF-8 bytes
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 8)) {
+            s.addGroomingLog(1, today, null);
+            s.addMeal(1, today, smile.repeat(10_000), 1.0);
+        }
+
+        try (SegmentStore s = new SegmentStore(dir, SEGMENT, 8)) {
+            HistoryBatch b = s.loadRecent(1, 0).join();
+            assertNull(b.grooming.get(0).description());
+            assertEquals(smile.repeat(Short.MAX_VALUE / 4), b.meals.get(0).name());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class StatsCoalescerTest {
+
+    private final LocalDate today = LocalDate.of(2024, 6, 1);
+
+    @Test
+    public void testMergesWithinWindow() {
+        List<List<StatsCoalescer.Pending>> out = new CopyOnWriteArrayList<>();
+        try (StatsCoalescer c = new StatsCoalescer(60_000, out::add)) {
+            c.update(1, today, 1000, 70, 20, 10, 1);
+            c.update(1, today, 2000, 75, 21, 15, 2);
+            c.update(1, today.plusDays(1), 3000, 80, 22, 5, 3);
+            c.update(2, today, 4000, 90, 30, 40, 0);
+            assertTrue(out.isEmpty());
+            assertEquals(2, c.pending());
+
+            c.flush();
+            assertEquals(1, out.size());
+            assertEquals(0, c.pending());
+            StatsCoalescer.Pending p = out.get(0).get(0);
+            assertEquals(1, p.petId);
+            assertEquals(80, p.hr);
+            assertEquals(5, p.act);
+            assertEquals(3, p.scratch);
+            assertEquals(15, p.activity.get(today));
+            assertEquals(5, p.activity.get(today.plusDays(1)));
+            assertEquals(3, p.samples);
+            assertArrayEquals(new int[] {1, 2, 3}, Arrays.copyOf(p.scratches, p.samples));
+            assertArrayEquals(new long[] {1000, 2000, 3000}, Arrays.copyOf(p.vitalsMs, p.samples));
+            assertEquals(2, out.get(0).get(1).petId);
+        }
+    }
+
+    @Test
+    public void testWindowElapses() throws Exception {
+        List<List<StatsCoalescer.Pending>> out = new CopyOnWriteArrayList<>();
+        try (StatsCoalescer c = new StatsCoalescer(20, out::add)) {
+            for (int i = 0; i < 10; i++) c.update(1, today, i, 70, 20, i, 0);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (out.isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            assertEquals(1, out.size());
+            assertEquals(10, out.get(0).get(0).merged);
+            assertEquals(9, out.get(0).get(0).act);
+        }
+    }
+
+    @Test
+    public void testZeroWindowAndClosePassThrough() {
+        List<List<StatsCoalescer.Pending>> out = new CopyOnWriteArrayList<>();
+        StatsCoalescer direct = new StatsCoalescer(0, out::add);
+        direct.update(1, today, 0, 70, 20, 1, 0);
+        assertEquals(1, out.size());
+        direct.close();
+
+        out.clear();
+        StatsCoalescer c = new StatsCoalescer(60_000, out::add);
+        c.update(1, today, 0, 70, 20, 1, 0);
+        c.close();
+        assertEquals(1, out.size());
+        c.update(1, today, 0, 71, 20, 1, 0);
+        assertEquals(2, out.size());
+    }
+}
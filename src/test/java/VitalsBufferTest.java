@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VitalsBufferTest {
+
+    @Test
+    public void testSummary() {
+        VitalsBuffer b = new VitalsBuffer(10);
+        b.add(1000, 60, 18);
+        b.add(2000, 80, 22);
+        b.add(3000, 70, 20);
+
+        VitalsBuffer.Summary s = b.summarize(0);
+        assertEquals(3, s.count());
+        assertEquals(60, s.minHr());
+        assertEquals(70.0, s.avgHr());
+        assertEquals(80, s.maxHr());
+        assertEquals(18, s.minRr());
+        assertEquals(22, s.maxRr());
+    }
+
+    @Test
+    public void testWindow() {
+        VitalsBuffer b = new VitalsBuffer(10);
+        b.add(1000, 200, 50);
+        b.add(2000, 60, 18);
+        b.add(3000, 62, 20);
+
+        VitalsBuffer.Summary s = b.summarize(2000);
+        assertEquals(2, s.count());
+        assertEquals(62, s.maxHr());
+        assertEquals(0, b.summarize(5000).count());
+    }
+
+    @Test
+    public void testOverwritesOldest() {
+        VitalsBuffer b = new VitalsBuffer(3);
+        long[] ts = {1, 2, 3, 4, 5};
+        int[] hr = {100, 100, 60, 61, 62};
+        int[] rr = {30, 30, 20, 20, 20};
+        b.addAll(ts, hr, rr, ts.length);
+
+        assertEquals(3, b.size());
+        assertEquals(5, b.latestMillis());
+        VitalsBuffer.Summary s = b.summarize(0);
+        assertEquals(3, s.count());
+        assertEquals(62, s.maxHr());
+    }
+}
@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+
+public class WeightTrendTest {
+
+    private static final LocalDate D1 = LocalDate.of(2024, 1, 1);
+
+    @Test
+    public void testLinearSeries() {
+        WeightTrend t = new WeightTrend();
+        for (int i = 0; i < 15; i++) t.add(D1.plusDays(2 * i), 10 + 0.02 * 2 * i);
+
+        assertEquals(15, t.size());
+        assertEquals(0.02, t.slope(), 1e-9);
+        assertEquals(0.14, t.weeklyChange(), 1e-9);
+        assertEquals(10.28, t.mean(), 1e-9);
+        assertEquals(2.8, t.deviationPct(10.0), 1e-9);
+        assertEquals(WeightTrend.Direction.GAINING, t.direction());
+        assertTrue(t.isAlerting(10.0));
+        assertFalse(t.isAlerting(11.0)); // gaining towards an ideal above
+    }
+
+    @Test
+    public void testWindowDropsOldSamples() {
+        WeightTrend t = new WeightTrend(30, 3, 14, 1.0);
+        for (int i = 0; i < 100; i++) t.add(D1.plusDays(i), i < 70 ? 20 : 10);
+
+        assertEquals(30, t.size());
+        assertEquals(10.0, t.mean(), 1e-9);
+        assertEquals(0.0, t.slope(), 1e-9);
+        assertEquals(WeightTrend.Direction.STABLE, t.direction());
+    }
+
+    @Test
+    public void testNeedsSpanAndSamples() {
+        WeightTrend t = new WeightTrend();
+        assertTrue(Double.isNaN(t.slope()));
+        t.add(D1, 10);
+        assertTrue(Double.isNaN(t.slope()));
+        t.add(D1.plusDays(1), 9);
+        t.add(D1.plusDays(2), 8);
+        assertEquals(-1.0, t.slope(), 1e-9);
+        assertEquals(WeightTrend.Direction.STABLE, t.direction()); // only two days of data
+        t.add(D1.plusDays(14), 7);
+        assertEquals(WeightTrend.Direction.LOSING, t.direction());
+    }
+
+    @Test
+    public void testRejectsOlderSampleAndRebuilds() {
+        DaySeries s = new DaySeries();
+        WeightTrend t = new WeightTrend();
+        for (int i = 0; i < 10; i++) {
+            s.add(D1.plusDays(i * 5), 12 - 0.1 * i);
+            t.add(D1.plusDays(i * 5), 12 - 0.1 * i);
+        }
+        assertFalse(t.add(D1.plusDays(1), 50));
+        s.add(D1.plusDays(44), 50);
+
+        WeightTrend r = new WeightTrend();
+        r.rebuild(s.all());
+        assertEquals(7, r.size());
+        assertTrue(r.mean() > t.mean());
+
+        WeightTrend fresh = new WeightTrend();
+        for (int i = 3; i < 10; i++) fresh.add(D1.plusDays(i * 5), 12 - 0.1 * i);
+        t.rebuild(s.all());
+        assertEquals(r.slope(), t.slope(), 1e-12);
+        assertNotEquals(fresh.slope(), r.slope());
+    }
+
+    @Test
+    public void testLongStreamStaysAccurate() {
+        WeightTrend t = new WeightTrend(10, 3, 5, 1.0);
+        for (int i = 0; i < 20_000; i++) t.add(D1.plusDays(i), 8 + 0.001 * (i % 10) + (i % 10 == 9 ? 0.123456789 : 0));
+        WeightTrend check = new WeightTrend(10, 3, 5, 1.0);
+        for (int i = 19_990; i < 20_000; i++) check.add(D1.plusDays(i), 8 + 0.001 * (i % 10) + (i % 10 == 9 ? 0.123456789 : 0));
+        assertEquals(check.mean(), t.mean(), 1e-9);
+        assertEquals(check.slope(), t.slope(), 1e-9);
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class WriteBehindQueueTest {
+
+    @Test
+    public void testFlushWritesEverything() {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        try (WriteBehindQueue<Integer> q = new WriteBehindQueue<>("test-writer", written::addAll, 100, 10)) {
+            for (int i = 0; i < 50; i++) q.submit(i);
+            q.flush();
+            assertEquals(50, written.size());
+            assertEquals(0, q.pending());
+        }
+    }
+
+    @Test
+    public void testBatchesQueuedWrites() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        try (WriteBehindQueue<Integer> q = new WriteBehindQueue<>("test-writer", b -> {
+            gate.await();
+            sizes.add(b.size());
+        }, 100, 10)) {
+            q.submit(0);
+            Thread.sleep(100);
+            for (int i = 1; i <= 25; i++) q.submit(i);
+            gate.countDown();
+            q.flush();
+        }
+        assertEquals(List.of(1, 10, 10, 5), sizes);
+    }
+
+    @Test
+    public void testFailedBatchDoesNotStopWriter() {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        try (WriteBehindQueue<Integer> q = new WriteBehindQueue<>("test-writer", b -> {
+            if (b.contains(-1)) throw new IllegalStateException("boom");
+            written.addAll(b);
+        }, 100, 1)) {
+            q.submit(-1);
+            q.submit(7);
+            q.flush();
+        }
+        assertEquals(List.of(7), written);
+    }
+
+    @Test
+    public void testCloseDrainsQueue() {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindQueue<Integer> q = new WriteBehindQueue<>("test-writer", written::addAll, 100, 10);
+        for (int i = 0; i < 20; i++) q.submit(i);
+        q.close();
+        assertEquals(20, written.size());
+        assertThrows(IllegalStateException.class, () -> q.submit(1));
+    }
+}